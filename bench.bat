@@ -0,0 +1,5 @@
+rem builds and runs the JMH benchmarks in bench\, see README.md
+rem needs jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars in lib\
+md bench-class
+javac -cp "lib/*" -d bench-class src\maze\*.java bench\maze\*.java
+java -cp "bench-class;lib/*" org.openjdk.jmh.Main -prof gc -prof maze.PeakMemoryProfiler %*
\ No newline at end of file
@@ -0,0 +1,6 @@
+# builds and runs the JMH benchmarks in bench/, see README.md
+# needs jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars in lib/
+# arguments are passed on to JMH, e.g. ./bench.sh GeneratorBenchmark -p size=50
+mkdir -p bench-class
+javac -cp "lib/*" -d bench-class src/maze/*.java bench/maze/*.java
+java -cp "bench-class:lib/*" org.openjdk.jmh.Main -prof gc -prof maze.PeakMemoryProfiler "$@"
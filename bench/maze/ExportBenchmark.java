@@ -0,0 +1,41 @@
+package maze;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a finished maze to a PNG file, as the 'X' key and --out do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class ExportBenchmark {
+    @Param({"100", "1000"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int scale;
+
+    private CellGrid grid;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        Maze maze = new Maze(size, size);
+        maze.generate(MazeMode.WILSON);
+        grid = maze.getGrid();
+        file = File.createTempFile("maze-bench", ".png");
+        file.deleteOnExit();
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        PngExport.write(grid, scale, file);
+    }
+}
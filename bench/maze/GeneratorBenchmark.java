@@ -0,0 +1,36 @@
+package maze;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every generation algorithm, from small to very large mazes.
+ * The 4000x4000 runs take seconds per operation (minutes for ALDOUSBRODER), so
+ * narrow the parameters when only one algorithm is of interest, e.g.
+ * ./bench.sh GeneratorBenchmark -p mode=PRIM -p size=50,500
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+    @Param({"BACKTRACK", "PRIM", "COMBO", "BTREE", "ALDOUSBRODER", "WILSON", "ELLER", "GROWINGTREE", "SIDEWINDER", "KRUSKAL", "FILTERKRUSKAL"})
+    public MazeMode mode;
+
+    @Param({"50", "500", "4000"})
+    public int size;
+
+    /**
+     * Generates one size x size maze without animation.
+     * @return - The generated grid, so the work is not optimised away.
+     */
+    @Benchmark
+    public Object generate() {
+        Maze maze = new Maze(size, size);
+        maze.generate(mode);
+        return maze.getGrid();
+    }
+}
@@ -0,0 +1,71 @@
+package maze;
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame rasterization at several scale factors: the final frame of a finished maze,
+ * and stepping forward through the frames of a recorded animation, either rendering
+ * whole frames or repainting only the cells that changed, as the UI does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class RenderBenchmark {
+    @Param({"100", "250"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int scale;
+
+    private Maze maze;
+    private FrameRenderer renderer;
+    private AnimatedImage animation;
+    private PixelWriter target;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        Main.scaleFactor = scale;
+        maze = new Maze(size, size, true);
+        maze.generate(MazeMode.WILSON);
+        renderer = new FrameRenderer(size, size);
+        animation = maze.getAnimation();
+        target = new WritableImage(animation.getWidth(), animation.getHeight()).getPixelWriter();
+    }
+
+    /**
+     * Renders the final frame of the maze.
+     * @return - The rendered image.
+     */
+    @Benchmark
+    public Object finalFrame() {
+        return renderer.render(maze.getGrid(), null, -1);
+    }
+
+    /**
+     * Renders the next frame of the animation, replaying the events since the previous one.
+     * @return - The rendered image.
+     */
+    @Benchmark
+    public Object nextFrame() {
+        frame = (frame + 1) % animation.size();
+        return animation.getFrame(frame);
+    }
+
+    /**
+     * Paints the next frame of the animation, repainting only the cells that changed.
+     * Wrapping around to the first frame repaints everything.
+     */
+    @Benchmark
+    public void nextFramePainted() {
+        frame = (frame + 1) % animation.size();
+        animation.paintFrame(frame, target);
+    }
+}
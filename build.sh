@@ -1,4 +1,6 @@
 mkdir class
 javac -d class src/maze/*.java
+# the Flight Recorder events need the jdk.jfr module (JDK 8u262 or later); without it they are left out
+javac -cp class -d class src-jfr/maze/*.java 2>/dev/null || echo "jdk.jfr not found, building without Flight Recorder events"
 jar cfm maze.jar manifest.txt -C class maze
 java -jar maze.jar
\ No newline at end of file
@@ -0,0 +1,7 @@
+rem builds and runs the self-checks in check\, see README.md
+rem every class named *Check is run, and the script fails if any of them does
+md check-class
+javac -d check-class src\maze\*.java check\maze\*.java || exit /b 1
+set status=0
+for %%f in (check\maze\*Check.java) do java -Xmx2g -cp check-class maze.%%~nf || set status=1
+exit /b %status%
\ No newline at end of file
@@ -0,0 +1,9 @@
+# builds and runs the self-checks in check/, see README.md
+# every class named *Check is run, and the script fails if any of them does
+mkdir -p check-class
+javac -d check-class src/maze/*.java check/maze/*.java || exit 1
+status=0
+for f in check/maze/*Check.java; do
+    java -Xmx2g -cp check-class maze.$(basename "$f" .java) || status=1
+done
+exit $status
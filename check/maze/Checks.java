@@ -0,0 +1,32 @@
+package maze;
+
+/**
+ * Reports the conditions tested by the self-checks in this folder, which check.sh runs.
+ * Every condition prints one line; a check exits with status 1 if any of its conditions failed.
+ */
+final class Checks {
+    private static int failures;
+
+    private Checks() {
+    }
+
+    /**
+     * Prints a condition and whether it holds.
+     * @param ok - Whether the condition holds.
+     * @param format - Description of the condition, as for String.format.
+     * @param args - Arguments of the description.
+     */
+    static void expect(boolean ok, String format, Object... args) {
+        System.out.printf("  %-6s %s%n", ok ? "ok" : "FAILED", String.format(format, args));
+        if(!ok) {
+            failures++;
+        }
+    }
+
+    /**
+     * Ends the check, with status 1 if any condition failed.
+     */
+    static void exit() {
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
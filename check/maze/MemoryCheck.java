@@ -0,0 +1,48 @@
+package maze;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Checks that a maze takes CellGrid.BYTES_PER_CELL bytes per cell on the heap: as
+ * reported by memoryBytes after generating with every mode, and as measured by the
+ * growth of the heap when a 4000x4000 grid is created.
+ */
+public class MemoryCheck {
+    private static final int SIZE = 4000;
+
+    public static void main(String[] args) {
+        System.out.println("MemoryCheck: bytes per cell");
+        for(MazeMode mode : MazeMode.values()) {
+            Maze maze = new Maze(200, 300);
+            maze.setSeed(1);
+            maze.generate(mode);
+            CellGrid grid = maze.getGrid();
+            Checks.expect(grid.memoryBytes() == (long) grid.size() * CellGrid.BYTES_PER_CELL,
+                    "%s: %d bytes for %d cells", mode, grid.memoryBytes(), grid.size());
+        }
+        // the heap with the grid, against the mean of the heap before and after it
+        long before = usedHeap();
+        CellGrid grid = new CellGrid(SIZE, SIZE);
+        long with = usedHeap();
+        long reported = grid.memoryBytes();
+        grid = null;
+        double perCell = (with - (before + usedHeap()) / 2.0) / ((double) SIZE * SIZE);
+        // the array header and the grid object are a few bytes; the rest is measurement noise
+        Checks.expect(perCell > CellGrid.BYTES_PER_CELL * 0.9 && perCell < CellGrid.BYTES_PER_CELL * 1.1,
+                "%dx%d grid: %.3f bytes per cell measured on the heap", SIZE, SIZE, perCell);
+        Checks.expect(reported == (long) SIZE * SIZE, "%dx%d grid: memoryBytes %d", SIZE, SIZE, reported);
+        Checks.exit();
+    }
+
+    /**
+     * @return - The bytes in use on the heap once garbage has been collected.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
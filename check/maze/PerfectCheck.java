@@ -0,0 +1,109 @@
+package maze;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that every generator makes perfect mazes, connected and without loops, both on
+ * its own and in parallel tiles stitched by TiledGenerator, for several tile sizes and
+ * pool sizes. The passages are joined in a union-find of the cells of their own, rather
+ * than tested with CellGrid.isPerfect, which is also checked to agree. To show the check
+ * can fail, a maze with a passage added and one with a passage removed must not pass.
+ */
+public class PerfectCheck {
+    private static final int ROWS = 61;
+    private static final int COLS = 47;
+    private static final int[] TILE_SIZES = {2, 7, 16};
+    private static final int[] THREADS = {1, 4};
+
+    public static void main(String[] args) {
+        System.out.println("PerfectCheck: every maze is connected and has no loop");
+        for(MazeMode mode : MazeMode.values()) {
+            int failed = 0;
+            int[][] sizes = {{ROWS, COLS}, {1, COLS}, {ROWS, 1}, {1, 1}};
+            for(int[] size : sizes) {
+                Maze maze = new Maze(size[0], size[1]);
+                maze.setSeed(size[0] * 31L + size[1]);
+                maze.generate(mode);
+                failed += perfect(maze.getGrid()) ? 0 : 1;
+            }
+            Checks.expect(failed == 0, "%s: %d of %d mazes not perfect", mode, failed, sizes.length);
+        }
+        for(int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            for(MazeMode mode : MazeMode.values()) {
+                int failed = 0;
+                for(int tileSize : TILE_SIZES) {
+                    failed += perfect(new TiledGenerator(ROWS, COLS, tileSize, mode).generate(pool)) ? 0 : 1;
+                }
+                Checks.expect(failed == 0, "%s in tiles of %d to %d cells, pool of %d: %d of %d mazes not perfect",
+                        mode, TILE_SIZES[0], TILE_SIZES[TILE_SIZES.length - 1], threads, failed, TILE_SIZES.length);
+            }
+            pool.shutdown();
+        }
+        Maze maze = new Maze(ROWS, COLS);
+        maze.setSeed(1);
+        maze.generate(MazeMode.BACKTRACK);
+        CellGrid grid = maze.getGrid();
+        CellGrid looped = grid.copy();
+        CellGrid split = new CellGrid(ROWS, COLS);
+        int added = -1;
+        int removed = -1;
+        byte[] row = new byte[COLS];
+        for(int r = 0; r < ROWS; r++) {
+            grid.copyRow(r, row);
+            for(int c = 0; c < COLS; c++) {
+                if(added < 0 && c < COLS - 1 && (row[c] & CellGrid.OPEN_RIGHT) == 0) {
+                    looped.carve(r, c, CellGrid.R);
+                    added = grid.cell(r, c);
+                } else if(removed < 0 && (row[c] & CellGrid.OPEN_RIGHT) != 0) {
+                    row[c] &= ~CellGrid.OPEN_RIGHT;
+                    removed = grid.cell(r, c);
+                }
+            }
+            split.setRow(r, row);
+        }
+        Checks.expect(!perfect(looped), "a passage added right of cell %d makes a loop", added);
+        Checks.expect(!perfect(split), "a passage removed right of cell %d disconnects the maze", removed);
+        Checks.exit();
+    }
+
+    /**
+     * @return - Whether the passages join all cells without a loop, and isPerfect agrees.
+     */
+    private static boolean perfect(CellGrid grid) {
+        int size = grid.size();
+        int[] parent = new int[size];
+        for(int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+        int joined = 0;
+        for(int cell = 0; cell < size; cell++) {
+            int exits = grid.exits(cell);
+            for(int dir : new int[] {CellGrid.R, CellGrid.D}) {
+                if((exits & (1 << dir)) == 0) {
+                    continue;
+                }
+                int a = root(parent, cell);
+                int b = root(parent, grid.neighbour(cell, dir));
+                if(a == b) {
+                    return false; // a loop
+                }
+                parent[a] = b;
+                joined++;
+            }
+        }
+        boolean perfect = joined == size - 1;
+        if(perfect != grid.isPerfect()) {
+            throw new IllegalStateException("CellGrid.isPerfect disagrees");
+        }
+        return perfect;
+    }
+
+    private static int root(int[] parent, int i) {
+        while(parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
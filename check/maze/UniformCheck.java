@@ -0,0 +1,97 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Checks that ALDOUSBRODER and WILSON, which both draw uniform spanning trees, give the
+ * same distribution of dead ends per maze: the means agree within four standard errors,
+ * and a two-sample Kolmogorov-Smirnov test does not tell the counts apart at the 0.1%
+ * level. The seeds are fixed, so the check gives the same result on every run. To show
+ * the tests can tell distributions apart, BACKTRACK, which makes far fewer dead ends,
+ * must fail them against WILSON.
+ */
+public class UniformCheck {
+    private static final int MAZES = 2000;
+    private static final int SIZE = 30;
+    private static final double MAX_Z = 4;
+    private static final double KS_FACTOR = 1.95; // c(0.001) of the Kolmogorov-Smirnov test
+
+    public static void main(String[] args) {
+        System.out.printf("UniformCheck: dead ends of %d %dx%d mazes per mode%n", MAZES, SIZE, SIZE);
+        long[] aldousBroder = deadEnds(MazeMode.ALDOUSBRODER, 0);
+        long[] wilson = deadEnds(MazeMode.WILSON, MAZES);
+        long[] backtrack = deadEnds(MazeMode.BACKTRACK, 2 * MAZES);
+        double z = z(aldousBroder, wilson);
+        double ks = ks(aldousBroder, wilson);
+        double critical = KS_FACTOR * Math.sqrt(2.0 / MAZES);
+        Checks.expect(Math.abs(z) < MAX_Z, "ALDOUSBRODER mean %.2f, WILSON mean %.2f: z = %.2f",
+                mean(aldousBroder), mean(wilson), z);
+        Checks.expect(ks < critical, "ALDOUSBRODER against WILSON: KS distance %.4f, critical %.4f", ks, critical);
+        Checks.expect(Math.abs(z(backtrack, wilson)) >= MAX_Z && ks(backtrack, wilson) >= critical,
+                "BACKTRACK mean %.2f is told apart from WILSON: z = %.2f, KS distance %.4f",
+                mean(backtrack), z(backtrack, wilson), ks(backtrack, wilson));
+        Checks.exit();
+    }
+
+    /**
+     * @return - The number of dead ends of each of MAZES mazes, seeded from first on.
+     */
+    private static long[] deadEnds(MazeMode mode, long first) {
+        long[] counts = new long[MAZES];
+        for(int i = 0; i < MAZES; i++) {
+            Maze maze = new Maze(SIZE, SIZE);
+            maze.setSeed(first + i);
+            maze.generate(mode);
+            counts[i] = maze.getGrid().countDeadEnds();
+        }
+        return counts;
+    }
+
+    private static double mean(long[] x) {
+        double sum = 0;
+        for(long v : x) {
+            sum += v;
+        }
+        return sum / x.length;
+    }
+
+    private static double variance(long[] x) {
+        double mean = mean(x);
+        double sum = 0;
+        for(long v : x) {
+            sum += (v - mean) * (v - mean);
+        }
+        return sum / (x.length - 1);
+    }
+
+    /**
+     * @return - The difference of the means in standard errors.
+     */
+    private static double z(long[] a, long[] b) {
+        return (mean(a) - mean(b)) / Math.sqrt(variance(a) / a.length + variance(b) / b.length);
+    }
+
+    /**
+     * @return - The largest distance between the empirical distribution functions.
+     */
+    private static double ks(long[] a, long[] b) {
+        long[] x = a.clone();
+        long[] y = b.clone();
+        Arrays.sort(x);
+        Arrays.sort(y);
+        double distance = 0;
+        int i = 0;
+        int j = 0;
+        while(i < x.length && j < y.length) {
+            long v = Math.min(x[i], y[j]);
+            while(i < x.length && x[i] == v) {
+                i++;
+            }
+            while(j < y.length && y[j] == v) {
+                j++;
+            }
+            distance = Math.max(distance, Math.abs((double) i / x.length - (double) j / y.length));
+        }
+        return distance;
+    }
+}
@@ -90,7 +90,8 @@ def main(argv):
 	
 	try:
 		# try to open the specified file
-		img = Image.open(inputfile)
+		# exported mazes are 1-bit palette images; work on them as RGBA
+		img = Image.open(inputfile).convert("RGBA")
 	except FileNotFoundError as err:
 		# if it fails, it probably doesnt exist (typo?)
 		print(str(err))
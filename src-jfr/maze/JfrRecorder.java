@@ -0,0 +1,117 @@
+package maze;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder events behind MazeEvents. This is the only class that refers to
+ * jdk.jfr, so it lives apart from the rest of the source and is loaded by name.
+ * Events are only created while a recording has them enabled, which one shared instance
+ * of each is asked, so nothing is allocated per frame otherwise.
+ */
+final class JfrRecorder implements MazeEvents.Recorder {
+    private static final GenerationEvent GENERATION = new GenerationEvent(); // never committed
+    private static final FrameEvent FRAME = new FrameEvent(); // never committed
+
+    @Override
+    public Object beginGeneration() {
+        if(!GENERATION.isEnabled()) {
+            return null;
+        }
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endGeneration(Object event, GenerationMetrics metrics) {
+        GenerationEvent e = (GenerationEvent) event;
+        e.end();
+        if(e.shouldCommit()) {
+            e.mode = metrics.getMode().toString();
+            e.rows = metrics.getRows();
+            e.cols = metrics.getCols();
+            e.iterations = metrics.getIters();
+            e.carveTime = metrics.getCarveNanos();
+            e.entryExitTime = metrics.getEntryExitNanos();
+            e.peakFrontier = metrics.getPeakFrontier();
+            e.frames = metrics.getFrames();
+            e.eventBytes = metrics.getEventBytes();
+            e.allocated = metrics.getAllocatedBytes();
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginFrame() {
+        if(!FRAME.isEnabled()) {
+            return null;
+        }
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFrame(Object event, int index, int replayed) {
+        FrameEvent e = (FrameEvent) event;
+        e.end();
+        if(e.shouldCommit()) {
+            e.index = index;
+            e.replayed = replayed;
+            e.commit();
+        }
+    }
+
+    @Name("maze.Generation")
+    @Label("Maze Generation")
+    @Category("Maze")
+    @Description("One run of a maze generation algorithm")
+    @StackTrace(false)
+    static class GenerationEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Rows")
+        int rows;
+        @Label("Columns")
+        int cols;
+        @Label("Iterations")
+        long iterations;
+        @Label("Carve Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long carveTime;
+        @Label("Entry/Exit Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long entryExitTime;
+        @Label("Peak Frontier")
+        @Description("Largest number of cells on the frontier or stack at once")
+        int peakFrontier;
+        @Label("Frames")
+        int frames;
+        @Label("Event Data")
+        @DataAmount
+        long eventBytes;
+        @Label("Allocated")
+        @Description("Bytes allocated by the generating thread; work done on fork/join pool threads is not included")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("maze.FrameRender")
+    @Label("Frame Render")
+    @Category("Maze")
+    @Description("Rasterization of one animation frame")
+    @StackTrace(false)
+    static class FrameEvent extends Event {
+        @Label("Frame")
+        int index;
+        @Label("Replayed Events")
+        int replayed;
+    }
+}
@@ -0,0 +1,114 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * The active cells of the growing tree generator, kept in the order they were added,
+ * with O(1) amortized access to the newest, the oldest, or a random member and O(1)
+ * amortized removal by position.
+ *
+ * Frontier's swap-remove cannot be used here, since moving the last member into the
+ * hole would lose track of which member is newest and which oldest. Instead a removed
+ * member only leaves a hole: the newest and oldest ends skip over holes, a random pick
+ * that lands in one is drawn again, and the members are packed together, still in order,
+ * once there are more holes than members. Every hole is skipped or packed away at most
+ * once, and a random pick needs about two draws on average when the list is large.
+ */
+class ActiveList {
+    private static final int EMPTY = -1;
+
+    private final int[] slots; // cell ids in insertion order, EMPTY for removed members
+    private int head;          // slots before head are unused
+    private int tail;          // slots from tail on are unused
+    private int size;
+
+    /**
+     * Class constructor for ActiveList.
+     * @param capacity - The number of cells in the grid; every cell may be added at most once.
+     */
+    ActiveList(int capacity) {
+        slots = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a cell as the newest member.
+     * @param cell - The cell id.
+     */
+    void add(int cell) {
+        slots[tail++] = cell;
+        size++;
+    }
+
+    /**
+     * Picks a member as the given policy asks. The list must not be empty.
+     * @param policy - How to pick.
+     * @param rng - Source of randomness.
+     * @return - The position of the member, valid until the next add or remove.
+     */
+    int pick(GrowthPolicy policy, SplittableRandom rng) {
+        switch(policy.choose(rng)) {
+            case NEWEST:
+                while(slots[tail - 1] == EMPTY) {
+                    tail--;
+                }
+                return tail - 1;
+            case OLDEST:
+                while(slots[head] == EMPTY) {
+                    head++;
+                }
+                return head;
+            default:
+                while(true) {
+                    int i = head + rng.nextInt(tail - head);
+                    if(slots[i] != EMPTY) {
+                        return i;
+                    }
+                }
+        }
+    }
+
+    /**
+     * @param position - A position returned by pick.
+     * @return - The cell id at that position.
+     */
+    int get(int position) {
+        return slots[position];
+    }
+
+    /**
+     * Removes the member at the given position.
+     * @param position - A position returned by pick.
+     */
+    void removeAt(int position) {
+        slots[position] = EMPTY;
+        size--;
+        if(size == 0) {
+            head = 0;
+            tail = 0;
+        } else if(tail - head > 2 * size + 16) {
+            compact();
+        }
+    }
+
+    /**
+     * Packs the members into the start of the array, keeping their order.
+     */
+    private void compact() {
+        int n = 0;
+        for(int i = head; i < tail; i++) {
+            if(slots[i] != EMPTY) {
+                slots[n++] = slots[i];
+            }
+        }
+        head = 0;
+        tail = n;
+    }
+}
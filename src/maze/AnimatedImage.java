@@ -1,39 +1,146 @@
 package maze;
 
 import javafx.scene.image.Image;
-
-import java.util.List;
+import javafx.scene.image.PixelWriter;
 
 // https://gamedevelopment.tutsplus.com/tutorials/introduction-to-javafx-for-game-development--cms-23835
 
  @SuppressWarnings({"unused", "SameParameterValue"})
  class AnimatedImage {
-    private Image[] frames;
+    private static final long KEYFRAME_BUDGET = 64L << 20; // bytes of keyframe snapshots per animation
+    private static final int MIN_KEYFRAME_INTERVAL = 64;
+
+    private final CarveLog log;
+    private final CellGrid maze;
+    private FrameRenderer renderer;
     private double duration;
 
-    AnimatedImage(List<Image> images) {
-        frames = new Image[images.size()];
-        for(int i = 0; i < frames.length; i++) {
-            frames[i] = images.get(i);
+    // replay state: the maze as it looked after frame 'replayedFrame'
+    private Replay replay;
+    private int position;
+    private int replayedFrame;
+    private int replayed; // events replayed by the last renderFrame call
+
+    // keyframes[k] is the state after frame k * interval, and the log position that follows it
+    private final int interval;
+    private final Replay[] keyframes;
+    private final int[] keyframePositions;
+
+    private Image cachedFrame;
+    private int cachedIndex = -1;
+    private boolean paintedFinal; // whether paintFrame last painted the finished maze rather than the replay state
+
+    private int renderedFrames;
+    private long renderNanos;
+
+    // playhead, in frames
+    private double playhead;
+    private double speed = 1;
+    private boolean paused;
+
+    /**
+     * Class constructor for AnimatedImage. Frames are rasterized on demand by
+     * replaying the generator's carve events.
+     *
+     * To make seeking cheap in both directions, the events are replayed once up front
+     * and a snapshot of the maze is kept every 'interval' frames, with as many snapshots
+     * as fit in KEYFRAME_BUDGET. Any frame is then reached by restoring at most one
+     * snapshot and replaying at most 'interval' frames of events.
+     * @param log - The events recorded while generating the maze.
+     * @param maze - The finished maze, used for the final frame.
+     */
+    AnimatedImage(CarveLog log, CellGrid maze) {
+        this.log = log;
+        this.maze = maze;
+        renderer = new FrameRenderer(maze.rows(), maze.cols());
+        long count = Math.max(1, KEYFRAME_BUDGET / Replay.memoryBytes(maze.rows(), maze.cols()));
+        interval = (int) Math.max(MIN_KEYFRAME_INTERVAL, (log.steps() + count - 1) / count);
+        keyframes = new Replay[log.steps() / interval + 1];
+        keyframePositions = new int[keyframes.length];
+        rewind();
+        while(position < log.size()) {
+            advanceOneFrame();
         }
+        rewind();
     }
 
     Image getFrame(int i) {
-        if(i > frames.length)
-            return frames[frames.length - 1];
+        if(i >= size())
+            i = size() - 1;
         if(i < 0)
-            return frames[0];
-        else
-            return frames[i];
+            i = 0;
+        if(i != cachedIndex) {
+            Object event = MazeEvents.beginFrame();
+            long start = System.nanoTime();
+            cachedFrame = renderFrame(i);
+            renderNanos += System.nanoTime() - start;
+            renderedFrames++;
+            MazeEvents.endFrame(event, i, replayed);
+            cachedIndex = i;
+        }
+        return cachedFrame;
+    }
+
+    /**
+     * Paints frame i straight to a pixel writer, such as a Canvas's. Only the cells that
+     * changed since the frame painted last are repainted, unless the playhead jumped
+     * through a keyframe or invalidate was called, in which case the whole frame is.
+     * @param i - Frame index.
+     * @param out - Where to paint; the same writer on every call.
+     */
+    void paintFrame(int i, PixelWriter out) {
+        if(i >= size())
+            i = size() - 1;
+        if(i < 0)
+            i = 0;
+        Object event = MazeEvents.beginFrame();
+        long start = System.nanoTime();
+        replayed = 0;
+        if(i == size() - 1) {
+            if(!paintedFinal) {
+                renderer.paintFinal(out, maze);
+                paintedFinal = true;
+                replay.invalidate();
+            }
+        } else {
+            moveTo(i);
+            renderer.paint(out, replay);
+            replay.clean();
+            paintedFinal = false;
+        }
+        renderNanos += System.nanoTime() - start;
+        renderedFrames++;
+        MazeEvents.endFrame(event, i, replayed);
+    }
+
+    /**
+     * Draws the frames at a scale other than Main.scaleFactor, and only the part of them
+     * in a view of the given size, which follows the current cell; see FrameRenderer.
+     * @param scale - Scale factor.
+     * @param w - Width of the view in pixels.
+     * @param h - Height of the view in pixels.
+     */
+    void setView(int scale, int w, int h) {
+        renderer = new FrameRenderer(maze.rows(), maze.cols(), scale, w, h);
+        cachedIndex = -1;
+        invalidate();
+    }
+
+    /**
+     * Makes the next paintFrame call repaint the whole frame, for example after
+     * something else was drawn over the canvas.
+     */
+    void invalidate() {
+        replay.invalidate();
+        paintedFinal = false;
     }
 
     Image getFrameAtTime(double time) { // get the frame to be displayed at a given point in time
-        int index = (int)((time % (frames.length * duration)) / duration);
-        return frames[index];
+        return getFrame(getFrameIndexAtTime(time));
     }
 
     int getFrameIndexAtTime(double time) {
-        return (int) ((time % (frames.length * duration)) / duration);
+        return (int) ((time % (size() * duration)) / duration);
     }
 
     void setDuration(double d) {
@@ -45,6 +152,152 @@ import java.util.List;
     }
 
     int size() {
-        return frames.length;
+        return log.steps();
+    }
+
+    /**
+     * Moves the playhead forward by the given amount of wall-clock time, scaled by the
+     * playback speed, unless playback is paused. The playhead stops at the last frame.
+     * @param seconds - Time since the last call.
+     */
+    void advance(double seconds) {
+        if(!paused) {
+            seek(playhead + seconds * speed / duration);
+        }
+    }
+
+    /**
+     * Moves the playhead to the given frame, clamped to the animation.
+     * @param frame - Frame index; fractions are kept so slow playback still advances.
+     */
+    void seek(double frame) {
+        playhead = Math.max(0, Math.min(frame, size() - 1));
+    }
+
+    /**
+     * Pauses playback and moves the playhead by a number of whole frames.
+     * @param frames - Frames to move, negative to step backwards.
+     */
+    void step(int frames) {
+        paused = true;
+        seek(Math.floor(playhead) + frames);
+    }
+
+    /**
+     * @return - The index of the frame under the playhead.
+     */
+    int getPlayheadFrame() {
+        return (int) playhead;
+    }
+
+    /**
+     * @return - The frame under the playhead.
+     */
+    Image getPlayheadImage() {
+        return getFrame(getPlayheadFrame());
+    }
+
+    void setPaused(boolean p) {
+        paused = p;
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @param s - Playback speed, as a multiple of the frame rate set with setDuration.
+     */
+    void setSpeed(double s) {
+        speed = s;
+    }
+
+    double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return - The number of frames rasterized so far.
+     */
+    int getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    /**
+     * @return - Total time spent rasterizing frames, in nanoseconds.
+     */
+    long getRenderNanos() {
+        return renderNanos;
+    }
+
+    int getWidth() {
+        return renderer.getWidth();
+    }
+
+    int getHeight() {
+        return renderer.getHeight();
+    }
+
+    /**
+     * Rasterizes frame i.
+     * @param i - Frame index.
+     * @return Image
+     */
+    private Image renderFrame(int i) {
+        replayed = 0;
+        if(i == size() - 1) {
+            // the final frame shows the finished maze with its entrance and exit
+            return renderer.render(maze, null, -1);
+        }
+        moveTo(i);
+        return renderer.render(replay.grid(), replay.marks(), replay.current());
+    }
+
+    /**
+     * Brings the replay state to frame i, which must not be the final frame. Replays events
+     * forward from the current state if it lies between frame i and the last keyframe
+     * before it; otherwise restores that keyframe first.
+     * @param i - Frame index.
+     */
+    private void moveTo(int i) {
+        int k = i / interval;
+        int keyframe = k == 0 ? -1 : k * interval;
+        if(replayedFrame > i || replayedFrame < keyframe) {
+            if(k == 0) {
+                rewind();
+            } else {
+                replay = keyframes[k].copy();
+                position = keyframePositions[k];
+                replayedFrame = keyframe;
+            }
+        }
+        while(replayedFrame < i) {
+            advanceOneFrame();
+        }
+    }
+
+    /**
+     * Replays the events of the next frame, taking a keyframe snapshot if the frame
+     * falls on the keyframe interval and none was taken yet.
+     */
+    private void advanceOneFrame() {
+        boolean ended = false;
+        while(!ended && position < log.size()) {
+            ended = replay.apply(log.cell(position), log.kind(position), log.direction(position));
+            position++;
+            replayed++;
+        }
+        replayedFrame++;
+        int k = replayedFrame / interval;
+        if(replayedFrame > 0 && replayedFrame % interval == 0 && k < keyframes.length && keyframes[k] == null) {
+            keyframes[k] = replay.copy();
+            keyframePositions[k] = position;
+        }
+    }
+
+    private void rewind() {
+        replay = new Replay(maze.rows(), maze.cols());
+        position = 0;
+        replayedFrame = -1;
     }
 }
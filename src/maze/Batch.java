@@ -0,0 +1,265 @@
+package maze;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless batch generation. Generates a number of independent mazes on a
+ * work-stealing pool without starting the JavaFX toolkit, optionally writing
+ * each one to a PNG file, and reports the throughput and dead-end statistics
+ * at the end. The dead-end mean and standard deviation can be used to compare
+ * the distributions produced by different modes, e.g. ALDOUSBRODER and WILSON.
+ */
+class Batch {
+    private final int count;
+    private final MazeMode mode;
+    private final int rows;
+    private final int cols;
+    private final File outDir;
+    private final int threads;
+    private final AtomicLong deadEnds = new AtomicLong();
+    private final AtomicLong deadEndSquares = new AtomicLong();
+    private SolveMode solveMode;
+    private int tileSize;
+    private boolean check;
+    private GrowthPolicy policy = GrowthPolicy.NEWEST;
+    private boolean binary;
+    private GridStorage storage = GridStorage.HEAP;
+    private ForkJoinPool pool;
+    private final AtomicLong solveNanos = new AtomicLong();
+    private final AtomicLong pathLengths = new AtomicLong();
+    private int queries;
+    private final AtomicLong indexNanos = new AtomicLong();
+    private final AtomicLong indexBytes = new AtomicLong();
+    private final AtomicLong distanceNanos = new AtomicLong();
+    private final AtomicLong pathNanos = new AtomicLong();
+    private final AtomicLong queryDistances = new AtomicLong();
+
+    /**
+     * Class constructor for Batch.
+     * @param count - Number of mazes to generate.
+     * @param mode - Generation algorithm to use.
+     * @param rows - Number of rows per maze.
+     * @param cols - Number of columns per maze.
+     * @param outDir - Directory to write the mazes to, or null to only generate them.
+     * @param threads - Number of worker threads.
+     */
+    Batch(int count, MazeMode mode, int rows, int cols, File outDir, int threads) {
+        this.count = count;
+        this.mode = mode;
+        this.rows = rows;
+        this.cols = cols;
+        this.outDir = outDir;
+        this.threads = threads;
+    }
+
+    /**
+     * Solves every maze after generating it, and reports the solve times.
+     * @param mode - The solving algorithm to use.
+     */
+    void setSolveMode(SolveMode mode) {
+        solveMode = mode;
+    }
+
+    /**
+     * Generates every maze in parallel tiles, see TiledGenerator.
+     * @param size - Preferred number of rows and columns per tile, or 0 to generate each maze as a whole.
+     */
+    void setTileSize(int size) {
+        tileSize = size;
+    }
+
+    /**
+     * Builds a PathIndex of every maze after generating it, then times distance and path
+     * queries between random pairs of cells on it.
+     * @param n - Number of queries of each kind per maze, or 0 for none.
+     */
+    void setQueries(int n) {
+        queries = n;
+    }
+
+    /**
+     * Checks that every maze is perfect (connected and without loops), counting
+     * the ones that are not as failures.
+     * @param c - Whether to check the mazes.
+     */
+    void setCheck(boolean c) {
+        check = c;
+    }
+
+    /**
+     * Sets how the GROWINGTREE mode picks the cell to grow from.
+     * @param p - The selection policy.
+     */
+    void setPolicy(GrowthPolicy p) {
+        policy = p;
+    }
+
+    /**
+     * Writes the mazes in the binary maze format (see MazeFile) instead of as PNG images.
+     * @param b - Whether to write the binary format.
+     */
+    void setBinaryOutput(boolean b) {
+        binary = b;
+    }
+
+    /**
+     * Sets where the cells of every maze are kept. Off the heap, mazes may be larger than
+     * the heap and have more than 2^31 cells; see Maze for the modes that can generate those
+     * without tiles. Checking and solving still need at most 2^31 cells.
+     * @param s - The storage; HEAP by default.
+     */
+    void setStorage(GridStorage s) {
+        storage = s;
+    }
+
+    /**
+     * Generates all mazes and prints the throughput.
+     * @return - The number of mazes that failed to be generated or written.
+     */
+    int run() {
+        if(outDir != null) {
+            //noinspection ResultOfMethodCallIgnored
+            outDir.mkdirs();
+        }
+        System.out.printf("Generating %d %s mazes of %dx%d on %d threads...%n", count, mode, rows, cols, threads);
+        if(mode == MazeMode.GROWINGTREE) {
+            System.out.printf("Growing tree policy (newest:oldest:random) %s.%n", policy);
+        }
+        if(tileSize > 0) {
+            System.out.printf("Each maze is generated in %d tiles.%n", new TiledGenerator(rows, cols, tileSize, mode).tiles());
+        }
+        AtomicInteger failures = new AtomicInteger();
+        pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                final int index = i;
+                tasks.add(pool.submit(() -> {
+                    try {
+                        generateOne(index);
+                    } catch(Exception ex) {
+                        failures.incrementAndGet();
+                        System.err.printf("Maze %d failed: %s%n", index, ex);
+                    }
+                }));
+            }
+            for(ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        int done = count - failures.get();
+        System.out.printf("Generated %d mazes in %.3f s: %.2f mazes/sec, %.0f cells/sec%n",
+                done, seconds, done / seconds, (double) done * rows * cols / seconds);
+        if(done > 0) {
+            double mean = (double) deadEnds.get() / done;
+            double variance = Math.max(0, (double) deadEndSquares.get() / done - mean * mean);
+            System.out.printf("Dead ends per maze: mean %.3f (%.3f%% of cells), std dev %.3f%n",
+                    mean, 100 * mean / ((double) rows * cols), Math.sqrt(variance));
+            if(solveMode != null) {
+                System.out.printf("Solved with %s: mean path length %.1f, mean solve time %.3f ms%n",
+                        solveMode, (double) pathLengths.get() / done, solveNanos.get() / 1000000.0 / done);
+            }
+            if(queries > 0) {
+                long total = (long) queries * done;
+                System.out.printf("Path index: mean build time %.3f ms, %.1f bytes per cell%n",
+                        indexNanos.get() / 1000000.0 / done, (double) indexBytes.get() / done / ((double) rows * cols));
+                System.out.printf("%d random queries per maze: mean distance %.1f, %.0f distances/sec, %.0f paths/sec%n",
+                        queries, (double) queryDistances.get() / total,
+                        total / (distanceNanos.get() / 1000000000.0), total / (pathNanos.get() / 1000000000.0));
+            }
+        }
+        return failures.get();
+    }
+
+    /**
+     * Indexes a maze and runs the random queries on it; see setQueries.
+     */
+    private void query(CellGrid grid, int index) {
+        long start = System.nanoTime();
+        PathIndex paths = new PathIndex(grid);
+        indexNanos.addAndGet(System.nanoTime() - start);
+        indexBytes.addAndGet(paths.memoryBytes());
+        int size = grid.size();
+        int[] pairs = new int[2 * queries];
+        SplittableRandom random = new SplittableRandom(index);
+        for(int i = 0; i < pairs.length; i++) {
+            pairs[i] = random.nextInt(size);
+        }
+        long distances = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < pairs.length; i += 2) {
+            distances += paths.distance(pairs[i], pairs[i + 1]);
+        }
+        distanceNanos.addAndGet(System.nanoTime() - start);
+        long steps = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < pairs.length; i += 2) {
+            steps += paths.path(pairs[i], pairs[i + 1]).length - 1;
+        }
+        pathNanos.addAndGet(System.nanoTime() - start);
+        if(steps != distances) {
+            throw new IllegalStateException("Maze " + index + " has paths that do not match their distances");
+        }
+        queryDistances.addAndGet(distances);
+    }
+
+    /**
+     * Generates a single maze and writes it to the output directory, if any.
+     * @param index - Index of the maze within the batch, used for the file name.
+     * @throws IOException - if the maze image cannot be written.
+     */
+    private void generateOne(int index) throws IOException {
+        CellGrid grid;
+        long seed = 0; // unknown for tiled mazes, whose tiles are generated concurrently
+        if(tileSize > 0) {
+            TiledGenerator tiled = new TiledGenerator(rows, cols, tileSize, mode);
+            tiled.setPolicy(policy);
+            tiled.setStorage(storage);
+            grid = tiled.generate(pool);
+        } else {
+            Maze maze = new Maze(rows, cols, false, storage);
+            maze.setPolicy(policy);
+            maze.generate(mode);
+            grid = maze.getGrid();
+            seed = maze.getSeed();
+        }
+        if(check && !grid.isPerfect()) {
+            throw new IllegalStateException("Maze " + index + " is not perfect");
+        }
+        long found = grid.countDeadEnds();
+        deadEnds.addAndGet(found);
+        deadEndSquares.addAndGet(found * found);
+        if(solveMode != null) {
+            long start = System.nanoTime();
+            int[] path = new Solver(grid).solve(solveMode);
+            solveNanos.addAndGet(System.nanoTime() - start);
+            if(path == null) {
+                throw new IllegalStateException("Maze " + index + " has no solution");
+            }
+            pathLengths.addAndGet(path.length);
+        }
+        if(queries > 0) {
+            query(grid, index);
+        }
+        if(outDir != null) {
+            String name = String.format("maze-%s-%06d", mode.toString().toLowerCase(), index);
+            if(binary) {
+                MazeFile.write(grid, mode, seed, new File(outDir, name + MazeFile.EXTENSION));
+            } else {
+                PngExport.write(grid, Main.scaleFactor, new File(outDir, name + ".png"));
+            }
+        }
+    }
+}
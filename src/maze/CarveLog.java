@@ -0,0 +1,141 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Append-only record of everything a generator does that changes how the maze looks.
+ * Each event is two ints: the cell id, and the event kind packed together with a direction.
+ * Frames are not stored; AnimatedImage replays the events and rasterizes a frame only
+ * when it is displayed, so an animated run costs a few ints per step rather than
+ * a full image per step.
+ */
+class CarveLog implements CarveSink {
+    /** The wall in the given direction of the cell was removed. */
+    static final int CARVE = 0;
+    /** The cell joined the frontier/stack and is highlighted. */
+    static final int MARK = 1;
+    /** The cell left the frontier/stack. */
+    static final int UNMARK = 2;
+    /** End of a frame; the cell is the current cell, or -1 for the final frame. */
+    static final int STEP = 3;
+
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private final int limit; // most events kept
+    private int[] events;
+    private int length; // number of ints used
+    private int steps;
+    private boolean dropped;
+
+    CarveLog() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor for a log of bounded size. Once it would hold more than limit events
+     * it discards them all and keeps no more, so it never takes more than 8 * limit bytes.
+     * @param limit - The most events to keep.
+     */
+    CarveLog(int limit) {
+        this.limit = limit;
+        events = new int[64];
+    }
+
+    /**
+     * Packs an event kind and direction into one int, as stored after the cell id.
+     * @param kind - One of CARVE, MARK, UNMARK, STEP.
+     * @param direction - The carved direction, for CARVE events.
+     * @return int
+     */
+    static int info(int kind, int direction) {
+        return kind | (direction << KIND_BITS);
+    }
+
+    static int kindOf(int info) {
+        return info & KIND_MASK;
+    }
+
+    static int directionOf(int info) {
+        return info >>> KIND_BITS;
+    }
+
+    @Override
+    public void carve(int cell, int direction) {
+        append(cell, info(CARVE, direction));
+    }
+
+    @Override
+    public void mark(int cell) {
+        append(cell, MARK);
+    }
+
+    @Override
+    public void unmark(int cell) {
+        append(cell, UNMARK);
+    }
+
+    @Override
+    public void step(int cell) {
+        append(cell, STEP);
+        steps++;
+    }
+
+    private void append(int cell, int info) {
+        if(dropped) {
+            return;
+        }
+        if(length / 2 >= limit) {
+            events = new int[0];
+            length = 0;
+            dropped = true;
+            return;
+        }
+        if(length + 2 > events.length) {
+            events = Arrays.copyOf(events, Math.max(events.length * 2, 64));
+        }
+        events[length] = cell;
+        events[length + 1] = info;
+        length += 2;
+    }
+
+    /**
+     * @return - True if more events were recorded than the limit allows, so none are kept.
+     */
+    boolean isDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return - The number of events recorded.
+     */
+    int size() {
+        return length / 2;
+    }
+
+    /**
+     * @return - The number of frames (STEP events) recorded.
+     */
+    int steps() {
+        return steps;
+    }
+
+    int cell(int event) {
+        return events[event * 2];
+    }
+
+    int kind(int event) {
+        return kindOf(events[event * 2 + 1]);
+    }
+
+    int direction(int event) {
+        return directionOf(events[event * 2 + 1]);
+    }
+
+    /**
+     * @return - The number of bytes of event data recorded.
+     */
+    long memoryBytes() {
+        return (long) length * Integer.BYTES;
+    }
+}
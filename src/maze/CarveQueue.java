@@ -0,0 +1,103 @@
+package maze;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer, single-consumer queue of carve events, used to play an
+ * animation while the maze is still being generated. The generating thread puts
+ * events in; the FX thread drains them into a Replay, without ever blocking.
+ *
+ * Events are stored like in CarveLog, two ints each, in a ring buffer whose size
+ * is fixed up front, so memory use does not grow with the size of the maze. The
+ * producer only waits when the ring is full, and gives up with a
+ * CancellationException if its thread is interrupted meanwhile.
+ */
+class CarveQueue implements CarveSink {
+    private static final long WAIT_NANOS = 200000;
+
+    private final int[] events;
+    private final int capacity; // in events, a power of two
+    private volatile long head; // events taken so far, written by the consumer only
+    private volatile long tail; // events put so far, written by the producer only
+
+    /**
+     * Class constructor for CarveQueue.
+     * @param capacity - Maximum number of queued events; rounded up to a power of two.
+     */
+    CarveQueue(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        events = new int[this.capacity * 2];
+    }
+
+    @Override
+    public void carve(int cell, int direction) {
+        put(cell, CarveLog.info(CarveLog.CARVE, direction));
+    }
+
+    @Override
+    public void mark(int cell) {
+        put(cell, CarveLog.info(CarveLog.MARK, 0));
+    }
+
+    @Override
+    public void unmark(int cell) {
+        put(cell, CarveLog.info(CarveLog.UNMARK, 0));
+    }
+
+    @Override
+    public void step(int cell) {
+        put(cell, CarveLog.info(CarveLog.STEP, 0));
+    }
+
+    private void put(int cell, int info) {
+        long t = tail;
+        while(t - head == capacity) {
+            LockSupport.parkNanos(WAIT_NANOS);
+            if(Thread.interrupted()) {
+                throw new CancellationException();
+            }
+        }
+        int i = (int) (t & (capacity - 1)) * 2;
+        events[i] = cell;
+        events[i + 1] = info;
+        tail = t + 1;
+    }
+
+    /**
+     * @return - The maximum number of queued events.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return - The number of events waiting to be taken.
+     */
+    int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Takes events and applies them to the replay until the given number of frames
+     * have ended, or the queue is empty. Called from the consumer thread only.
+     * @param replay - The state to apply the events to.
+     * @param frames - Number of frames to advance.
+     * @return - The number of frames that ended.
+     */
+    int drain(Replay replay, int frames) {
+        long h = head;
+        long t = tail;
+        int ended = 0;
+        while(h < t && ended < frames) {
+            int i = (int) (h & (capacity - 1)) * 2;
+            int info = events[i + 1];
+            if(replay.apply(events[i], CarveLog.kindOf(info), CarveLog.directionOf(info))) {
+                ended++;
+            }
+            h++;
+        }
+        head = h;
+        return ended;
+    }
+}
@@ -0,0 +1,48 @@
+package maze;
+
+/**
+ * Receives the events of a generation run as they happen.
+ * See CarveLog for the meaning of each event.
+ */
+interface CarveSink {
+    void carve(int cell, int direction);
+
+    void mark(int cell);
+
+    void unmark(int cell);
+
+    void step(int cell);
+
+    /**
+     * @param a - The first receiver.
+     * @param b - The second receiver.
+     * @return - A sink that passes every event to a, then to b.
+     */
+    static CarveSink both(CarveSink a, CarveSink b) {
+        return new CarveSink() {
+            @Override
+            public void carve(int cell, int direction) {
+                a.carve(cell, direction);
+                b.carve(cell, direction);
+            }
+
+            @Override
+            public void mark(int cell) {
+                a.mark(cell);
+                b.mark(cell);
+            }
+
+            @Override
+            public void unmark(int cell) {
+                a.unmark(cell);
+                b.unmark(cell);
+            }
+
+            @Override
+            public void step(int cell) {
+                a.step(cell);
+                b.step(cell);
+            }
+        };
+    }
+}
@@ -0,0 +1,412 @@
+package maze;
+
+import java.util.BitSet;
+
+/**
+ * Compact storage for the cells of a maze.
+ * Every cell is packed into a single byte of one flat array, indexed row-major
+ * (cell = row * cols + col). Only the RIGHT and DOWN walls of a cell are stored;
+ * the LEFT and UP walls belong to the neighbouring cell, so every shared edge
+ * is represented by exactly one bit.
+ *
+ * Bit layout of a cell:
+ *   bit 0 - passage to the right neighbour
+ *   bit 1 - passage to the neighbour below
+ *   bit 2 - visited
+ *
+ * Memory use is BYTES_PER_CELL (1 byte) per cell, so a 10000x10000 maze needs
+ * roughly 100MB, compared to ~40 bytes plus an array header per cell for the
+ * old int[rows][cols][5] matrix. The bytes live in a CellStore, normally a heap array;
+ * a maze opened with MazeFile reads them straight from the mapped file instead, and a
+ * grid created off the heap (see GridStorage) may have more than 2^31 cells. Rows and
+ * columns are always addressed with 64-bit indices, but the methods taking or returning
+ * an int cell id (size, cell, exits, neighbour, isPerfect) need at most 2^31 - 1 cells;
+ * size throws on larger grids, so their users fail early.
+ */
+class CellGrid {
+    static final int L = 0;
+    static final int R = 1;
+    static final int U = 2;
+    static final int D = 3;
+
+    static final int BYTES_PER_CELL = 1;
+
+    static final byte OPEN_RIGHT = 1;
+    static final byte OPEN_DOWN = 1 << 1;
+    private static final byte VISITED = 1 << 2;
+
+    private final int rows;
+    private final int cols;
+    private final CellStore cells;
+    private final CellStore.Writable writable; // the same store, or null if it is read-only
+    private boolean entryOpen;
+    private boolean exitOpen;
+
+    /**
+     * Class constructor for CellGrid. All walls start closed and no cell is visited.
+     * @param r - Number of rows.
+     * @param c - Number of columns.
+     */
+    CellGrid(int r, int c) {
+        if(r < 1 || c < 1 || (long) r * c > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Invalid grid size %dx%d", r, c));
+        }
+        rows = r;
+        cols = c;
+        writable = new CellStore.Heap(r * c);
+        cells = writable;
+    }
+
+    /**
+     * Class constructor for a grid over existing cells, such as a maze loaded from a file.
+     * @param r - Number of rows.
+     * @param c - Number of columns.
+     * @param store - The cells; must hold r * c of them. The grid is read-only unless the store is Writable.
+     * @param entry - Whether the entrance is open.
+     * @param exit - Whether the exit is open.
+     */
+    CellGrid(int r, int c, CellStore store, boolean entry, boolean exit) {
+        if(r < 1 || c < 1 || (long) r * c != store.size()) {
+            throw new IllegalArgumentException(String.format("Invalid grid size %dx%d for %d cells", r, c, store.size()));
+        }
+        rows = r;
+        cols = c;
+        cells = store;
+        writable = store instanceof CellStore.Writable ? (CellStore.Writable) store : null;
+        entryOpen = entry;
+        exitOpen = exit;
+    }
+
+    /**
+     * @return - An independent copy of this grid on the heap, including its entrance and exit.
+     */
+    CellGrid copy() {
+        CellGrid copy = new CellGrid(rows, cols);
+        byte[] row = new byte[cols];
+        for(int r = 0; r < rows; r++) {
+            copyRow(r, row);
+            copy.writable.copyFrom(row, 0, index(r, 0), cols);
+        }
+        copy.entryOpen = entryOpen;
+        copy.exitOpen = exitOpen;
+        return copy;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int cols() {
+        return cols;
+    }
+
+    /**
+     * @return - The number of cells in the grid.
+     * @throws IllegalStateException - if the grid has too many cells for int cell ids; see cellCount.
+     */
+    int size() {
+        long size = cells.size();
+        if(size > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format("The %dx%d grid has too many cells for int cell ids", rows, cols));
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return - The number of cells in the grid, however many there are.
+     */
+    long cellCount() {
+        return cells.size();
+    }
+
+    /**
+     * @return - Whether the cells cannot be changed, as in a maze opened with MazeFile.
+     * Carving, visiting or setting cells of a read-only grid throws IllegalStateException.
+     */
+    boolean isReadOnly() {
+        return writable == null;
+    }
+
+    /**
+     * @return - The store, to change cells in.
+     * @throws IllegalStateException - if the grid is read-only.
+     */
+    private CellStore.Writable writable() {
+        if(writable == null) {
+            throw new IllegalStateException(String.format("The %dx%d grid is read-only", rows, cols));
+        }
+        return writable;
+    }
+
+    /**
+     * @return - The number of bytes used to store the cell data.
+     */
+    long memoryBytes() {
+        return cells.memoryBytes();
+    }
+
+    int cell(int r, int c) {
+        return r * cols + c;
+    }
+
+    /**
+     * @return - The 64-bit index of cell (r, c) in the store.
+     */
+    private long index(int r, int c) {
+        return (long) r * cols + c;
+    }
+
+    boolean isVisited(int r, int c) {
+        return (cells.get(index(r, c)) & VISITED) != 0;
+    }
+
+    void visit(int r, int c) {
+        writable().or(index(r, c), VISITED);
+    }
+
+    /**
+     * Copies the cells of row r into dst.
+     * @param r - Row to copy.
+     * @param dst - Array of at least cols bytes.
+     */
+    void copyRow(int r, byte[] dst) {
+        cells.copyTo(index(r, 0), dst, 0, cols);
+    }
+
+    /**
+     * Replaces the cells of row r with src and marks them visited. Rows are stored apart,
+     * so different rows may be set concurrently.
+     * @param r - Row to set.
+     * @param src - The cells of the row, at least cols bytes, in the layout returned by copyRow.
+     */
+    void setRow(int r, byte[] src) {
+        writable().copyFrom(src, 0, index(r, 0), cols, VISITED);
+    }
+
+    /**
+     * Copies all cells of another grid into this one, with its top-left cell at (r, c).
+     * The entrance and exit of the other grid are not copied.
+     * @param r - Row to place the first row of the other grid at.
+     * @param c - Column to place the first column of the other grid at.
+     * @param tile - The grid to copy; it must fit inside this one.
+     */
+    void paste(int r, int c, CellGrid tile) {
+        CellStore.Writable cells = writable();
+        byte[] row = new byte[tile.cols];
+        for(int i = 0; i < tile.rows; i++) {
+            tile.copyRow(i, row);
+            cells.copyFrom(row, 0, index(r + i, c), tile.cols);
+        }
+    }
+
+    /**
+     * Returns true if there is a passage leading out of cell (r, c) in direction dir.
+     * The entrance (UP from the top-left cell) and exit (DOWN from the bottom-right cell)
+     * count as passages once they have been opened with setEntryExit.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @param dir - One of L, R, U, D.
+     * @return boolean
+     */
+    boolean isOpen(int r, int c, int dir) {
+        switch(dir) {
+            case L:
+                return c > 0 && (cells.get(index(r, c) - 1) & OPEN_RIGHT) != 0;
+            case R:
+                return (cells.get(index(r, c)) & OPEN_RIGHT) != 0;
+            case U:
+                if(r == 0) return entryOpen && c == 0;
+                return (cells.get(index(r - 1, c)) & OPEN_DOWN) != 0;
+            case D:
+                if(r == rows - 1) return exitOpen && c == cols - 1;
+                return (cells.get(index(r, c)) & OPEN_DOWN) != 0;
+            default:
+                throw new IllegalArgumentException("Invalid direction " + dir);
+        }
+    }
+
+    /**
+     * Returns the directions in which passages lead out of the given cell to other cells,
+     * as a bit mask with bit dir set for each open direction (1 << L, 1 << R, ...).
+     * The entrance and exit are not included.
+     * @param cell - Cell id.
+     * @return int
+     */
+    int exits(int cell) {
+        return exits(cell, cell % cols, cell >= (rows - 1) * cols);
+    }
+
+    /**
+     * Returns exits for cell (r, c), on a grid of any size.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @return int
+     */
+    int exits(int r, int c) {
+        return exits(index(r, c), c, r == rows - 1);
+    }
+
+    private int exits(long i, int col, boolean lastRow) {
+        // built without data-dependent branches; only the grid edges are tested. A passage
+        // out of the grid through the right or bottom edge, which only a damaged or foreign
+        // file could hold, is ignored rather than leading to a cell that does not exist
+        int own = cells.get(i);
+        int left = col != 0 ? cells.get(i - 1) : 0;
+        int up = i >= cols ? cells.get(i - cols) : 0;
+        if(col == cols - 1) {
+            own &= ~OPEN_RIGHT;
+        }
+        if(lastRow) {
+            own &= ~OPEN_DOWN;
+        }
+        return ((left & OPEN_RIGHT) << L)
+                | ((own & OPEN_RIGHT) << R)
+                | ((up & OPEN_DOWN) << (U - 1))
+                | ((own & OPEN_DOWN) << (D - 1));
+    }
+
+    /**
+     * Stores exits(cell) for every cell in an array, one byte per cell. The grid is read a
+     * row at a time, keeping the row above, which is much faster than calling exits for each.
+     * @param dst - Array of at least size() bytes.
+     */
+    void copyExits(byte[] dst) {
+        int size = size();
+        byte[] above = new byte[cols];
+        byte[] row = new byte[cols];
+        for(int r = 0, base = 0; base < size; r++, base += cols) {
+            copyRow(r, row);
+            int down = r < rows - 1 ? OPEN_DOWN : 0;
+            int left = 0;
+            for(int c = 0; c < cols; c++) {
+                int own = row[c] & (c < cols - 1 ? OPEN_RIGHT | down : down);
+                dst[base + c] = (byte) (((left & OPEN_RIGHT) << L)
+                        | ((own & OPEN_RIGHT) << R)
+                        | ((above[c] & OPEN_DOWN) << (U - 1))
+                        | ((own & OPEN_DOWN) << (D - 1)));
+                left = own;
+            }
+            byte[] swap = above;
+            above = row;
+            row = swap;
+        }
+    }
+
+    /**
+     * Returns the id of the neighbour of a cell in direction dir, without checking for walls.
+     * @param cell - Cell id.
+     * @param dir - One of L, R, U, D.
+     * @return int
+     */
+    int neighbour(int cell, int dir) {
+        switch(dir) {
+            case L:
+                return cell - 1;
+            case R:
+                return cell + 1;
+            case U:
+                return cell - cols;
+            default:
+                return cell + cols;
+        }
+    }
+
+    /**
+     * Removes the wall between cell (r, c) and its neighbour in direction dir.
+     * The neighbour must exist.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @param dir - One of L, R, U, D.
+     */
+    void carve(int r, int c, int dir) {
+        CellStore.Writable cells = writable();
+        switch(dir) {
+            case L:
+                cells.or(index(r, c) - 1, OPEN_RIGHT);
+                break;
+            case R:
+                cells.or(index(r, c), OPEN_RIGHT);
+                break;
+            case U:
+                cells.or(index(r - 1, c), OPEN_DOWN);
+                break;
+            case D:
+                cells.or(index(r, c), OPEN_DOWN);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid direction " + dir);
+        }
+    }
+
+    /**
+     * Returns the number of passages from cell (r, c) to its neighbouring cells.
+     * The entrance and exit are not counted.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @return int
+     */
+    int passages(int r, int c) {
+        int count = 0;
+        if(isOpen(r, c, L)) count++;
+        if(c < cols - 1 && isOpen(r, c, R)) count++;
+        if(r > 0 && isOpen(r, c, U)) count++;
+        if(r < rows - 1 && isOpen(r, c, D)) count++;
+        return count;
+    }
+
+    /**
+     * @return - The number of cells with exactly one passage.
+     */
+    long countDeadEnds() {
+        long deadEnds = 0;
+        for(int r = 0; r < rows; r++) {
+            for(int c = 0; c < cols; c++) {
+                if(passages(r, c) == 1) {
+                    deadEnds++;
+                }
+            }
+        }
+        return deadEnds;
+    }
+
+    /**
+     * Checks that the maze is perfect: every cell can be reached from every other cell
+     * through exactly one path. This holds when all cells are connected and there is
+     * exactly one passage fewer than there are cells (so there is no loop).
+     * @return boolean
+     */
+    boolean isPerfect() {
+        long passages = 0;
+        int size = size();
+        for(int cell = 0; cell < size; cell++) {
+            passages += Integer.bitCount(cells.get(cell) & (OPEN_RIGHT | OPEN_DOWN));
+        }
+        if(passages != size - 1) {
+            return false;
+        }
+        BitSet reached = new BitSet(size);
+        int[] queue = new int[size];
+        int tail = 0;
+        reached.set(0);
+        queue[tail++] = 0;
+        for(int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            for(int exits = exits(cell); exits != 0; exits &= exits - 1) {
+                int next = neighbour(cell, Integer.numberOfTrailingZeros(exits));
+                if(!reached.get(next)) {
+                    reached.set(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail == size;
+    }
+
+    /**
+     * Opens the maze entrance (top of the top-left cell) and exit (bottom of the bottom-right cell).
+     */
+    void setEntryExit() {
+        entryOpen = true;
+        exitOpen = true;
+    }
+}
@@ -0,0 +1,308 @@
+package maze;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Where a CellGrid keeps its cells, one byte each in the CellGrid layout, indexed by a
+ * 64-bit cell index (row * cols + col). Heap is the normal, Writable storage, limited to
+ * 2^31 cells by the size of a Java array. OffHeap keeps the cells outside the heap, in
+ * direct or memory-mapped segments, so they are never scanned or copied by the garbage
+ * collector and a maze is not limited by -Xmx. Packed is a read-only view of the passages
+ * of a finished maze stored two bits per cell in ByteBuffers, such as a file mapped by
+ * MazeFile, so a saved maze can be used without copying it into the heap first.
+ *
+ * OffHeap and Packed split their bytes into segments of 2^SEGMENT_BITS, so that any number
+ * of cells can be addressed with the int indices of a ByteBuffer.
+ */
+abstract class CellStore {
+    static final int SEGMENT_BITS = 30;
+    static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    /**
+     * @return - The number of cells.
+     */
+    abstract long size();
+
+    /**
+     * @param i - Cell id.
+     * @return - The cell's byte.
+     */
+    abstract byte get(long i);
+
+    /**
+     * @return - The number of bytes used to store the cells.
+     */
+    abstract long memoryBytes();
+
+    /**
+     * Copies cells to a byte array.
+     * @param from - First cell id.
+     * @param dst - Destination array.
+     * @param offset - Position in dst of the first cell.
+     * @param length - Number of cells.
+     */
+    void copyTo(long from, byte[] dst, int offset, int length) {
+        for(int i = 0; i < length; i++) {
+            dst[offset + i] = get(from + i);
+        }
+    }
+
+    /**
+     * Storage whose cells can be changed; every store but Packed.
+     */
+    abstract static class Writable extends CellStore {
+        /**
+         * Sets bits in a cell's byte.
+         * @param i - Cell id.
+         * @param bits - The bits to set.
+         */
+        abstract void or(long i, int bits);
+
+        /**
+         * Overwrites cells from a byte array.
+         * @param src - Source array.
+         * @param offset - Position in src of the first cell.
+         * @param to - First cell id.
+         * @param length - Number of cells.
+         */
+        abstract void copyFrom(byte[] src, int offset, long to, int length);
+
+        /**
+         * Overwrites cells from a byte array, setting the given bits in every one of them.
+         * @param src - Source array; not changed.
+         * @param offset - Position in src of the first cell.
+         * @param to - First cell id.
+         * @param length - Number of cells.
+         * @param bits - The bits to set.
+         */
+        void copyFrom(byte[] src, int offset, long to, int length, int bits) {
+            copyFrom(src, offset, to, length);
+            for(int i = 0; i < length; i++) {
+                or(to + i, bits);
+            }
+        }
+    }
+
+    /**
+     * Cells in a byte array on the Java heap.
+     */
+    static final class Heap extends Writable {
+        private final byte[] cells;
+
+        Heap(int size) {
+            cells = new byte[size];
+        }
+
+        @Override
+        long size() {
+            return cells.length;
+        }
+
+        @Override
+        byte get(long i) {
+            return cells[(int) i];
+        }
+
+        @Override
+        void or(long i, int bits) {
+            cells[(int) i] |= bits;
+        }
+
+        @Override
+        long memoryBytes() {
+            return (long) cells.length * CellGrid.BYTES_PER_CELL;
+        }
+
+        @Override
+        void copyTo(long from, byte[] dst, int offset, int length) {
+            System.arraycopy(cells, (int) from, dst, offset, length);
+        }
+
+        @Override
+        void copyFrom(byte[] src, int offset, long to, int length) {
+            System.arraycopy(src, offset, cells, (int) to, length);
+        }
+
+        @Override
+        void copyFrom(byte[] src, int offset, long to, int length, int bits) {
+            int at = (int) to;
+            for(int i = 0; i < length; i++) {
+                cells[at + i] = (byte) (src[offset + i] | bits);
+            }
+        }
+    }
+
+    /**
+     * Cells outside the Java heap, in segments of 2^SEGMENT_BITS bytes. The segments are either
+     * direct buffers, which count against -XX:MaxDirectMemorySize (by default the maximum
+     * heap size), or mappings of a temporary file, which only need address space and disk:
+     * the operating system pages them in and out, so the maze may even be larger than the
+     * physical memory. All cells start at zero. Like Heap, writes to different cells that
+     * are not in the same byte may be made concurrently.
+     */
+    static final class OffHeap extends Writable {
+        private final ByteBuffer[] segments;
+        private final long size;
+
+        /**
+         * @param size - Number of cells.
+         * @param directory - Directory for the temporary file to map, or null for direct buffers.
+         * @throws IOException - if the temporary file cannot be created or mapped.
+         */
+        OffHeap(long size, File directory) throws IOException {
+            if(size < 1) {
+                throw new IllegalArgumentException("Invalid number of cells " + size);
+            }
+            this.size = size;
+            segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            if(directory == null) {
+                for(int s = 0; s < segments.length; s++) {
+                    segments[s] = ByteBuffer.allocateDirect(segmentSize(s));
+                }
+                return;
+            }
+            File file = File.createTempFile("maze", ".cells", directory);
+            try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size); // sparse, so the disk only fills up as cells are written
+                FileChannel channel = raf.getChannel();
+                for(int s = 0; s < segments.length; s++) {
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, (long) s << SEGMENT_BITS, segmentSize(s));
+                }
+            } finally {
+                // the mappings stay valid; where a mapped file cannot be deleted, it goes when the JVM exits
+                if(!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+
+        private int segmentSize(int s) {
+            return (int) Math.min(1L << SEGMENT_BITS, size - ((long) s << SEGMENT_BITS));
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        byte get(long i) {
+            return segments[(int) (i >>> SEGMENT_BITS)].get((int) i & SEGMENT_MASK);
+        }
+
+        @Override
+        void or(long i, int bits) {
+            ByteBuffer segment = segments[(int) (i >>> SEGMENT_BITS)];
+            int at = (int) i & SEGMENT_MASK;
+            segment.put(at, (byte) (segment.get(at) | bits));
+        }
+
+        @Override
+        long memoryBytes() {
+            return size * CellGrid.BYTES_PER_CELL;
+        }
+
+        @Override
+        void copyTo(long from, byte[] dst, int offset, int length) {
+            while(length > 0) {
+                // a duplicate has its own position, so other threads can copy at the same time
+                ByteBuffer segment = segments[(int) (from >>> SEGMENT_BITS)].duplicate();
+                int at = (int) from & SEGMENT_MASK;
+                int n = Math.min(length, segment.capacity() - at);
+                segment.position(at);
+                segment.get(dst, offset, n);
+                from += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        void copyFrom(byte[] src, int offset, long to, int length) {
+            while(length > 0) {
+                ByteBuffer segment = segments[(int) (to >>> SEGMENT_BITS)].duplicate();
+                int at = (int) to & SEGMENT_MASK;
+                int n = Math.min(length, segment.capacity() - at);
+                segment.position(at);
+                segment.put(src, offset, n);
+                to += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        void copyFrom(byte[] src, int offset, long to, int length, int bits) {
+            // through a small buffer, as single byte puts to a ByteBuffer cost far more than bulk ones
+            byte[] chunk = new byte[Math.min(length, 1 << 10)];
+            while(length > 0) {
+                int n = Math.min(length, chunk.length);
+                for(int i = 0; i < n; i++) {
+                    chunk[i] = (byte) (src[offset + i] | bits);
+                }
+                copyFrom(chunk, 0, to, n);
+                to += n;
+                offset += n;
+                length -= n;
+            }
+        }
+    }
+
+    /**
+     * The passages of a finished maze, two bits per cell and four cells per byte from the
+     * low bits up: bit 0 for the passage right, bit 1 for the passage down. These are
+     * CellGrid.OPEN_RIGHT and CellGrid.OPEN_DOWN, so a cell's byte is just its two bits.
+     * No cell is visited. Read-only, so not Writable.
+     */
+    static final class Packed extends CellStore {
+        private final ByteBuffer[] segments;
+        private final long offset;
+        private final long size;
+
+        /**
+         * @param segments - Hold the packed cells, one after the other; each but the last holds
+         * 2^SEGMENT_BITS bytes. Read with absolute gets only, so their positions do not matter.
+         * @param offset - Position in the segments of the byte holding cell 0.
+         * @param size - Number of cells.
+         */
+        Packed(ByteBuffer[] segments, long offset, long size) {
+            long limit = segments.length == 0 ? 0
+                    : ((long) (segments.length - 1) << SEGMENT_BITS) + segments[segments.length - 1].limit();
+            if(limit - offset < bytes(size)) {
+                throw new IllegalArgumentException("Buffer too small for " + size + " cells");
+            }
+            this.segments = segments;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /**
+         * @param cells - Number of cells.
+         * @return - The number of bytes holding that many packed cells.
+         */
+        static long bytes(long cells) {
+            return (cells + 3) >>> 2;
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        byte get(long i) {
+            long at = offset + (i >>> 2);
+            int packed = segments[(int) (at >>> SEGMENT_BITS)].get((int) at & SEGMENT_MASK);
+            return (byte) ((packed >>> (((int) i & 3) << 1)) & 3);
+        }
+
+        @Override
+        long memoryBytes() {
+            return bytes(size);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets of the ids 0 to n - 1 (union-find), stored in a single int array:
+ * every element holds the id of its parent, or, for the root of a set, -1 - rank.
+ * Unions attach the root of lower rank under the other, and find halves the path it
+ * walks, so any sequence of operations runs in nearly linear time. Keeping the ranks
+ * in the same array means a union touches no memory beyond the two paths it walks,
+ * which matters when the elements are visited in random order. Uses 4 bytes per element.
+ */
+class DisjointSet {
+    private final int[] parent;
+
+    /**
+     * Class constructor for DisjointSet. Every element starts in a set of its own.
+     * @param n - The number of elements.
+     */
+    DisjointSet(int n) {
+        parent = new int[n];
+        Arrays.fill(parent, -1);
+    }
+
+    /**
+     * Finds the representative of the set holding x, pointing every other element on the
+     * way at its grandparent.
+     * @param x - An element.
+     * @return - The root of x's set.
+     */
+    int find(int x) {
+        int p;
+        while((p = parent[x]) >= 0) {
+            int grandparent = parent[p];
+            if(grandparent < 0) {
+                return p;
+            }
+            parent[x] = grandparent;
+            x = grandparent;
+        }
+        return x;
+    }
+
+    /**
+     * Finds the representative of the set holding x without changing anything, so it may
+     * be called from several threads at once as long as no find or union runs meanwhile.
+     * @param x - An element.
+     * @return - The root of x's set.
+     */
+    int root(int x) {
+        int p;
+        while((p = parent[x]) >= 0) {
+            x = p;
+        }
+        return x;
+    }
+
+    /**
+     * Joins the sets holding a and b.
+     * @param a - An element.
+     * @param b - An element.
+     * @return - false if a and b were already in the same set.
+     */
+    boolean union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if(a == b) {
+            return false;
+        }
+        // roots hold -1 - rank, so the higher rank is the more negative value
+        if(parent[a] > parent[b]) {
+            parent[a] = b;
+        } else {
+            if(parent[a] == parent[b]) {
+                parent[a]--;
+            }
+            parent[b] = a;
+        }
+        return true;
+    }
+}
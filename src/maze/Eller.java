@@ -0,0 +1,134 @@
+package maze;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Maze generation based on Eller's algorithm.
+ * The maze is built one row at a time and every row is handed to a RowSink as soon
+ * as it is finished, so only the current row is ever held in memory. Memory use is
+ * a few arrays of length cols, however many rows are generated.
+ *
+ * Each column carries the label of the set of cells it is connected to through the
+ * rows above. Within a row, neighbouring cells of different sets are joined at random,
+ * then every set is continued downwards through at least one of its cells. The last
+ * row joins all remaining sets, which makes the maze perfect.
+ */
+class Eller {
+    private final int cols;
+    private final Random rng;
+    private final byte[] row;
+    private final int[] set;       // set label of each column
+    private final int[] parent;    // union-find over the labels, reset every row
+    private final int[] remaining; // cells of each set not yet decided in the current row
+    private final boolean[] down;  // whether each set has been continued into the next row
+    private long bits;
+    private int bitsLeft;
+
+    /**
+     * Class constructor for Eller.
+     * @param c - Number of columns.
+     * @param rng - Source of randomness.
+     */
+    Eller(int c, Random rng) {
+        if(c < 1) {
+            throw new IllegalArgumentException("Invalid number of columns " + c);
+        }
+        cols = c;
+        this.rng = rng;
+        row = new byte[c];
+        set = new int[c];
+        parent = new int[c];
+        remaining = new int[c];
+        down = new boolean[c];
+    }
+
+    /**
+     * Generates a maze with the given number of rows, passing each row to the sink.
+     * @param rows - Number of rows.
+     * @param sink - Receives the rows in order.
+     * @throws IOException - if the sink fails to write a row.
+     */
+    void generate(long rows, RowSink sink) throws IOException {
+        if(rows < 1) {
+            throw new IllegalArgumentException("Invalid number of rows " + rows);
+        }
+        for(int c = 0; c < cols; c++) {
+            set[c] = c;
+        }
+        for(long r = 0; r < rows; r++) {
+            boolean last = r == rows - 1;
+            Arrays.fill(row, (byte) 0);
+            for(int label = 0; label < cols; label++) {
+                parent[label] = label;
+            }
+            // join neighbouring cells of different sets; the last row joins them all
+            for(int c = 0; c < cols - 1; c++) {
+                int a = find(set[c]);
+                int b = find(set[c + 1]);
+                if(a != b && (last || coin())) {
+                    row[c] |= CellGrid.OPEN_RIGHT;
+                    parent[b] = a;
+                }
+            }
+            if(!last) {
+                continueDown();
+            }
+            sink.row(r, row);
+        }
+    }
+
+    /**
+     * Carves passages down from the current row, at least one per set, and labels
+     * the next row: cells below a passage stay in their set, the others get a new set.
+     */
+    private void continueDown() {
+        Arrays.fill(remaining, 0);
+        Arrays.fill(down, false);
+        for(int c = 0; c < cols; c++) {
+            set[c] = find(set[c]);
+            remaining[set[c]]++;
+        }
+        for(int c = 0; c < cols; c++) {
+            int s = set[c];
+            remaining[s]--;
+            if(coin() || (remaining[s] == 0 && !down[s])) {
+                row[c] |= CellGrid.OPEN_DOWN;
+                down[s] = true;
+            }
+        }
+        // labels of sets that did not continue down are free again
+        int free = 0;
+        for(int c = 0; c < cols; c++) {
+            if((row[c] & CellGrid.OPEN_DOWN) == 0) {
+                while(down[free]) {
+                    free++;
+                }
+                set[c] = free++;
+            }
+        }
+    }
+
+    private int find(int label) {
+        while(parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * @return - A random boolean, taken from a buffered 64-bit random number.
+     */
+    private boolean coin() {
+        if(bitsLeft == 0) {
+            bits = rng.nextLong();
+            bitsLeft = 64;
+        }
+        bitsLeft--;
+        boolean heads = (bits & 1) != 0;
+        bits >>>= 1;
+        return heads;
+    }
+}
@@ -0,0 +1,324 @@
+package maze;
+
+import javafx.scene.image.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Rasterizes the state of a maze into an image.
+ * Passages are white, the current cell is red and cells on the generator's
+ * frontier or stack (the marked cells) are light blue.
+ *
+ * Frames are drawn already scaled into one reusable ARGB buffer, which is pushed
+ * to one reusable WritableImage with a single setPixels call. Rendering a frame
+ * allocates nothing; the returned image is overwritten by the next render call.
+ *
+ * For animations the buffer can instead be painted straight to a PixelWriter, such as
+ * a Canvas's, one cell at a time: every cell owns the square of pixels from its left
+ * and top openings to its right and bottom openings, so repainting the cells that
+ * changed since the last frame needs neither a full redraw nor an image.
+ *
+ * A renderer can also be given a smaller scale and a view, a rectangle of the frame the
+ * size of the canvas, so mazes larger than the window can still be animated. Only the
+ * view is drawn and the buffer is only as large as the view, which moves to keep the
+ * current cell in sight: when that leaves the view, the view is centred on it again and
+ * the frame is painted in full.
+ */
+class FrameRenderer {
+    private static final int BLUE = 0xFF0000FF;
+    private static final int RED = 0xFFFF0000;
+    private static final int CYAN = 0xFF00FFFF;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final BitSet NO_MARKS = new BitSet();
+
+    private final int rows;
+    private final int cols;
+    private final int width;
+    private final int height;
+    private final int scale;
+    private final int viewWidth;
+    private final int viewHeight;
+    private int originX; // frame pixel at the top-left corner of the view
+    private int originY;
+    private int[] pixels;
+    private WritableImage image;
+
+    /**
+     * Class constructor for FrameRenderer.
+     * @param r - Number of rows.
+     * @param c - Number of columns.
+     */
+    FrameRenderer(int r, int c) {
+        this(r, c, Main.scaleFactor, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor for FrameRenderer, drawing only a view of the frame.
+     * @param r - Number of rows.
+     * @param c - Number of columns.
+     * @param scale - Scale factor, in place of Main.scaleFactor.
+     * @param w - Width of the view in pixels; the whole frame if it is no wider.
+     * @param h - Height of the view in pixels; the whole frame if it is no taller.
+     */
+    FrameRenderer(int r, int c, int scale, int w, int h) {
+        rows = r;
+        cols = c;
+        this.scale = scale;
+        width = (cols * Main.cellSize + (Main.cellSize / 2)) * scale;
+        height = (rows * Main.cellSize + (Main.cellSize / 2)) * scale;
+        viewWidth = Math.min(w, width);
+        viewHeight = Math.min(h, height);
+    }
+
+    /**
+     * @return - Width of a rendered frame in pixels, after scaling.
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return - Height of a rendered frame in pixels, after scaling.
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return - Width of the view in pixels, the width of the images returned.
+     */
+    int getViewWidth() {
+        return viewWidth;
+    }
+
+    /**
+     * @return - Height of the view in pixels, the height of the images returned.
+     */
+    int getViewHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Returns a single image showing the given state of the maze.
+     * @param grid - The cell data to draw.
+     * @param marks - Cells to highlight in light blue, or null for none.
+     * @param current - The cell to highlight in red, or -1 for the final frame with entrance and exit.
+     * @return Image
+     */
+    Image render(CellGrid grid, BitSet marks, int current) {
+        draw(grid, marks, current);
+        return push();
+    }
+
+    /**
+     * Paints the given state of the maze to a pixel writer, repainting only the cells that
+     * changed since the state was last cleaned, or everything if it is all dirty.
+     * The view follows the current cell, and is painted in full whenever it moves.
+     * The caller cleans the state afterwards.
+     * @param out - Where to paint, usually the pixel writer of a Canvas of at least getViewWidth x getViewHeight.
+     * @param state - The state to paint.
+     */
+    void paint(PixelWriter out, Replay state) {
+        if(follow(state.current()) || state.isAllDirty()) {
+            draw(state.grid(), state.marks(), state.current());
+            out.setPixels(0, 0, viewWidth, viewHeight, PixelFormat.getIntArgbInstance(), pixels, 0, viewWidth);
+            return;
+        }
+        int cellSize = Main.cellSize;
+        int size = cellSize * scale;
+        int[] cells = state.dirtyCells();
+        for(int i = 0; i < state.dirtyCount(); i++) {
+            int row = cells[i] / cols;
+            int col = cells[i] % cols;
+            int x = cellSize * col;
+            int y = cellSize * row;
+            // the cell's square in the view, cut to the view
+            int left = Math.max(0, (x + 1) * scale - originX);
+            int top = Math.max(0, (y + 1) * scale - originY);
+            int right = Math.min(viewWidth, (x + 1) * scale - originX + size);
+            int bottom = Math.min(viewHeight, (y + 1) * scale - originY + size);
+            if(left >= right || top >= bottom) {
+                continue;
+            }
+            fill(x + 1, y + 1, cellSize, cellSize, BLUE);
+            drawCell(state.grid(), state.marks(), state.current(), row, col);
+            out.setPixels(left, top, right - left, bottom - top, PixelFormat.getIntArgbInstance(),
+                    pixels, top * viewWidth + left, viewWidth);
+        }
+    }
+
+    /**
+     * Paints the final frame of the finished maze, with entrance and exit, to a pixel writer.
+     * @param out - Where to paint.
+     * @param grid - The finished maze.
+     */
+    void paintFinal(PixelWriter out, CellGrid grid) {
+        draw(grid, null, -1);
+        out.setPixels(0, 0, viewWidth, viewHeight, PixelFormat.getIntArgbInstance(), pixels, 0, viewWidth);
+    }
+
+    /**
+     * Returns the final frame of the maze with a solution path drawn over it in red.
+     * @param grid - The finished maze.
+     * @param path - The cell ids on the path, as returned by Solver, entrance first.
+     * @return Image
+     */
+    Image renderSolved(CellGrid grid, int[] path) {
+        draw(grid, null, -1);
+        int cellSize = Main.cellSize;
+        for(int i = 0; i < path.length; i++) {
+            int row = path[i] / cols;
+            int col = path[i] % cols;
+            int x = cellSize * col;
+            int y = cellSize * row;
+            fill(x + 2, y + 2, cellSize - 2, cellSize - 2, RED);
+            if(i + 1 < path.length) {
+                // join this cell to the next one through the opening between them
+                int nextRow = path[i + 1] / cols;
+                int nextCol = path[i + 1] % cols;
+                if(nextCol > col) {
+                    fill(x + cellSize, y + 2, 2, cellSize - 2, RED);
+                } else if(nextCol < col) {
+                    fill(x, y + 2, 2, cellSize - 2, RED);
+                } else if(nextRow > row) {
+                    fill(x + 2, y + cellSize, cellSize - 2, 2, RED);
+                } else {
+                    fill(x + 2, y, cellSize - 2, 2, RED);
+                }
+            }
+        }
+        if(path.length > 0 && path[0] == 0 && grid.isOpen(0, 0, CellGrid.U)) {
+            // entrance
+            fill(2, 0, cellSize - 2, 2, RED);
+        }
+        if(path.length > 0 && path[path.length - 1] == grid.size() - 1 && grid.isOpen(rows - 1, cols - 1, CellGrid.D)) {
+            // exit
+            fill(cellSize * (cols - 1) + 2, cellSize * rows, cellSize - 2, 2, RED);
+        }
+        return push();
+    }
+
+    /**
+     * Draws the given state of the maze into the pixel buffer.
+     * @param grid - The cell data to draw.
+     * @param marks - Cells to highlight in light blue, or null for none.
+     * @param current - The cell to highlight in red, or -1 for the final frame with entrance and exit.
+     */
+    private void draw(CellGrid grid, BitSet marks, int current) {
+        if(pixels == null) {
+            pixels = new int[viewWidth * viewHeight];
+        }
+        Arrays.fill(pixels, BLUE);
+        // the cells whose squares reach into the view
+        int cellSize = Main.cellSize;
+        int firstRow = Math.max(0, (originY / scale - 1) / cellSize);
+        int lastRow = Math.min(rows - 1, (originY + viewHeight - 1) / scale / cellSize);
+        int firstCol = Math.max(0, (originX / scale - 1) / cellSize);
+        int lastCol = Math.min(cols - 1, (originX + viewWidth - 1) / scale / cellSize);
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int col = firstCol; col <= lastCol; col++) {
+                drawCell(grid, marks, current, row, col);
+            }
+        }
+        // entrance & exit stuff
+        if(current == -1) {
+            int w = width / scale;
+            int h = height / scale;
+            fill(2, 0, 2, 1, WHITE);
+            fill(w - 4, h - 1, 2, 1, WHITE);
+        }
+    }
+
+    /**
+     * Centres the view on a cell that is not wholly inside it, as far as the frame allows.
+     * @param cell - Cell id, or -1 for none.
+     * @return - True if the view moved.
+     */
+    private boolean follow(int cell) {
+        if(cell < 0 || (viewWidth == width && viewHeight == height)) {
+            return false;
+        }
+        int size = Main.cellSize * scale;
+        int x = (Main.cellSize * (cell % cols) + 1) * scale;
+        int y = (Main.cellSize * (cell / cols) + 1) * scale;
+        if(x >= originX && x + size <= originX + viewWidth && y >= originY && y + size <= originY + viewHeight) {
+            return false;
+        }
+        originX = Math.max(0, Math.min(width - viewWidth, x + size / 2 - viewWidth / 2));
+        originY = Math.max(0, Math.min(height - viewHeight, y + size / 2 - viewHeight / 2));
+        return true;
+    }
+
+    /**
+     * Draws one cell and its openings over a blue background.
+     * @param grid - The cell data to draw.
+     * @param marks - Cells to highlight in light blue, or null for none.
+     * @param current - The cell to highlight in red.
+     * @param row - Row of the cell.
+     * @param col - Column of the cell.
+     */
+    private void drawCell(CellGrid grid, BitSet marks, int current, int row, int col) {
+        if(marks == null) {
+            marks = NO_MARKS;
+        }
+        int cellSize = Main.cellSize;
+        int x = cellSize * col;
+        int y = cellSize * row;
+        int cell = grid.cell(row, col);
+        int colour;
+        if (cell == current) {
+            colour = RED;
+        } else if (marks.get(cell)) {
+            colour = CYAN;
+        } else {
+            colour = WHITE;
+        }
+        // colour all except the outer pixels of this cell
+        fill(x + 2, y + 2, cellSize - 2, cellSize - 2, colour);
+        if (grid.isOpen(row, col, CellGrid.L)) {
+            fill(x + 1, y + 2, 1, cellSize - 2, colour);
+        }
+        if (grid.isOpen(row, col, CellGrid.R)) {
+            fill(x + cellSize, y + 2, 1, cellSize - 2, colour);
+        }
+        if (grid.isOpen(row, col, CellGrid.U)) {
+            fill(x + 2, y + 1, cellSize - 2, 1, colour);
+        }
+        if (grid.isOpen(row, col, CellGrid.D)) {
+            fill(x + 2, y + cellSize, cellSize - 2, 1, colour);
+        }
+    }
+
+    /**
+     * Copies the pixel buffer into the image in one call.
+     * @return - The reused image.
+     */
+    private Image push() {
+        if(image == null) {
+            image = new WritableImage(viewWidth, viewHeight);
+        }
+        image.getPixelWriter().setPixels(0, 0, viewWidth, viewHeight, PixelFormat.getIntArgbInstance(), pixels, 0, viewWidth);
+        return image;
+    }
+
+    /**
+     * Fills a rectangle given in unscaled pixel coordinates, cut to the view.
+     * @param x - Left edge.
+     * @param y - Top edge.
+     * @param w - Width.
+     * @param h - Height.
+     * @param colour - ARGB colour.
+     */
+    private void fill(int x, int y, int w, int h, int colour) {
+        int from = Math.max(0, x * scale - originX);
+        int to = Math.min(viewWidth, (x + w) * scale - originX);
+        if(from >= to) {
+            return;
+        }
+        int last = Math.min(viewHeight, (y + h) * scale - originY);
+        for(int line = Math.max(0, y * scale - originY); line < last; line++) {
+            Arrays.fill(pixels, line * viewWidth + from, line * viewWidth + to, colour);
+        }
+    }
+}
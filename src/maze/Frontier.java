@@ -0,0 +1,86 @@
+package maze;
+
+/**
+ * Set of cell ids with O(1) add, membership test, indexed access and removal.
+ * Members are kept densely packed in one int array, and a second array maps
+ * every cell id to its position in the first, so removal swaps the last member
+ * into the freed slot. Uses 8 bytes per cell of the grid, with no boxing.
+ */
+class Frontier {
+    private final int[] members;
+    private final int[] positions; // position + 1 of each cell in members, 0 if absent
+    private int size;
+
+    /**
+     * Class constructor for Frontier.
+     * @param capacity - The number of cells in the grid; valid cell ids are 0 to capacity - 1.
+     */
+    Frontier(int capacity) {
+        members = new int[capacity];
+        positions = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int cell) {
+        return positions[cell] != 0;
+    }
+
+    /**
+     * Adds a cell to the set if it is not already a member.
+     * @param cell - The cell id.
+     * @return - true if the cell was added.
+     */
+    boolean add(int cell) {
+        if(positions[cell] != 0) {
+            return false;
+        }
+        members[size] = cell;
+        size++;
+        positions[cell] = size;
+        return true;
+    }
+
+    /**
+     * @param i - Index between 0 and size() - 1.
+     * @return - The cell id stored at index i.
+     */
+    int get(int i) {
+        return members[i];
+    }
+
+    /**
+     * Removes the member at index i by moving the last member into its place.
+     * @param i - Index between 0 and size() - 1.
+     * @return - The removed cell id.
+     */
+    int removeAt(int i) {
+        int cell = members[i];
+        size--;
+        int last = members[size];
+        members[i] = last;
+        positions[last] = i + 1;
+        positions[cell] = 0;
+        return cell;
+    }
+
+    /**
+     * Removes a cell from the set if it is a member.
+     * @param cell - The cell id.
+     * @return - true if the cell was removed.
+     */
+    boolean remove(int cell) {
+        int position = positions[cell];
+        if(position == 0) {
+            return false;
+        }
+        removeAt(position - 1);
+        return true;
+    }
+}
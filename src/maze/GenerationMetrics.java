@@ -0,0 +1,122 @@
+package maze;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measurements of a single maze generation run, returned by Maze.generate.
+ * Times are wall-clock nanoseconds. The same values are emitted as a JDK Flight
+ * Recorder event, see MazeEvents.
+ */
+class GenerationMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final MazeMode mode;
+    private final int rows;
+    private final int cols;
+    private final long iters;
+    private final long carveNanos;
+    private final long entryExitNanos;
+    private final int peakFrontier;
+    private final int frames;
+    private final long eventBytes;
+    private final long allocatedBytes;
+
+    /**
+     * Class constructor for GenerationMetrics.
+     * @param mode - The generation algorithm.
+     * @param rows - Number of rows.
+     * @param cols - Number of columns.
+     * @param iters - Iterations of the algorithm's main loop.
+     * @param carveNanos - Time spent running the algorithm, excluding the entry/exit phase.
+     * @param entryExitNanos - Time spent opening the entrance and exit.
+     * @param peakFrontier - Largest number of cells on the frontier/stack at once.
+     * @param frames - Number of animation frames recorded.
+     * @param eventBytes - Bytes of recorded animation events.
+     * @param allocatedBytes - Bytes allocated by the generating thread, or -1 if the JVM cannot tell.
+     *                       Work handed to fork/join pool threads, such as the parallel fills of
+     *                       BTREE and SIDEWINDER and the edge filtering of FILTERKRUSKAL, is not counted.
+     */
+    GenerationMetrics(MazeMode mode, int rows, int cols, long iters, long carveNanos, long entryExitNanos,
+                      int peakFrontier, int frames, long eventBytes, long allocatedBytes) {
+        this.mode = mode;
+        this.rows = rows;
+        this.cols = cols;
+        this.iters = iters;
+        this.carveNanos = carveNanos;
+        this.entryExitNanos = entryExitNanos;
+        this.peakFrontier = peakFrontier;
+        this.frames = frames;
+        this.eventBytes = eventBytes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return - The number of bytes allocated so far by the current thread, or -1 if the JVM
+     * does not support allocation measurement.
+     */
+    static long threadAllocatedBytes() {
+        if(THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    MazeMode getMode() {
+        return mode;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    long getIters() {
+        return iters;
+    }
+
+    long getCarveNanos() {
+        return carveNanos;
+    }
+
+    long getEntryExitNanos() {
+        return entryExitNanos;
+    }
+
+    /**
+     * @return - Total generation time in nanoseconds.
+     */
+    long getTotalNanos() {
+        return carveNanos + entryExitNanos;
+    }
+
+    int getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    int getFrames() {
+        return frames;
+    }
+
+    long getEventBytes() {
+        return eventBytes;
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %dx%d: %d iterations, carve %.3f ms, entry/exit %.3f ms, peak frontier %d cells, " +
+                        "%d frames (%d bytes of events), %s allocated by the generating thread",
+                mode, rows, cols, iters, carveNanos / 1000000.0, entryExitNanos / 1000000.0, peakFrontier,
+                frames, eventBytes, allocatedBytes < 0 ? "unknown bytes" : allocatedBytes + " bytes");
+    }
+}
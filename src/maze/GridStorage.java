@@ -0,0 +1,38 @@
+package maze;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Where the cells of a new maze are stored; see CellStore.
+ */
+public enum GridStorage {
+    /** A byte array on the Java heap, for at most 2^31 cells. */
+    HEAP,
+    /** Direct buffers outside the heap, limited by -XX:MaxDirectMemorySize. */
+    DIRECT,
+    /** A temporary file in java.io.tmpdir, mapped into memory and deleted straight away. */
+    MAPPED;
+
+    /**
+     * Creates an empty grid, with all walls closed and no cell visited.
+     * @param rows - Number of rows.
+     * @param cols - Number of columns.
+     * @return - The grid.
+     */
+    CellGrid createGrid(int rows, int cols) {
+        if(this == HEAP) {
+            return new CellGrid(rows, cols);
+        }
+        if(rows < 1 || cols < 1) {
+            throw new IllegalArgumentException(String.format("Invalid grid size %dx%d", rows, cols));
+        }
+        try {
+            File directory = this == MAPPED ? new File(System.getProperty("java.io.tmpdir")) : null;
+            return new CellGrid(rows, cols, new CellStore.OffHeap((long) rows * cols, directory), false, false);
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
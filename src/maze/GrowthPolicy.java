@@ -0,0 +1,90 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * How the growing tree generator chooses which active cell to grow from next: the newest,
+ * the oldest, or a random one, each with a weight. Always taking the newest cell gives the
+ * long winding corridors of the recursive backtracker, always taking a random one gives the
+ * short branches of Prim's algorithm, and mixing the two blends the styles.
+ */
+final class GrowthPolicy {
+    enum Pick { NEWEST, OLDEST, RANDOM }
+
+    static final GrowthPolicy NEWEST = new GrowthPolicy(1, 0, 0);
+    static final GrowthPolicy OLDEST = new GrowthPolicy(0, 1, 0);
+    static final GrowthPolicy RANDOM = new GrowthPolicy(0, 0, 1);
+    /** Newest or random with equal chance, as the COMBO mode. */
+    static final GrowthPolicy MIX = new GrowthPolicy(1, 0, 1);
+
+    private final int newest;
+    private final int oldest;
+    private final int random;
+
+    /**
+     * Class constructor for GrowthPolicy. Each pick is made with probability proportional to its weight.
+     * @param newest - Weight of taking the newest active cell.
+     * @param oldest - Weight of taking the oldest active cell.
+     * @param random - Weight of taking a uniformly random active cell.
+     */
+    GrowthPolicy(int newest, int oldest, int random) {
+        if(newest < 0 || oldest < 0 || random < 0 || (long) newest + oldest + random == 0
+                || (long) newest + oldest + random > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid policy weights %d:%d:%d", newest, oldest, random));
+        }
+        this.newest = newest;
+        this.oldest = oldest;
+        this.random = random;
+    }
+
+    /**
+     * Parses a policy as given on the command line.
+     * @param s - One of newest, oldest, random and mix, or weights newest:oldest:random such as 3:0:1.
+     * @return GrowthPolicy
+     */
+    static GrowthPolicy parse(String s) {
+        switch(s.toLowerCase()) {
+            case "newest":
+                return NEWEST;
+            case "oldest":
+                return OLDEST;
+            case "random":
+                return RANDOM;
+            case "mix":
+                return MIX;
+        }
+        String[] weights = s.split(":");
+        if(weights.length != 3) {
+            throw new IllegalArgumentException("Unknown policy " + s);
+        }
+        return new GrowthPolicy(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]), Integer.parseInt(weights[2]));
+    }
+
+    /**
+     * Decides which active cell to take next. Draws no random number unless the policy is a mix.
+     * @param rng - Source of randomness.
+     * @return Pick
+     */
+    Pick choose(SplittableRandom rng) {
+        int total = newest + oldest + random;
+        if(newest == total) {
+            return Pick.NEWEST;
+        }
+        if(oldest == total) {
+            return Pick.OLDEST;
+        }
+        if(random == total) {
+            return Pick.RANDOM;
+        }
+        int die = rng.nextInt(total);
+        if(die < newest) {
+            return Pick.NEWEST;
+        }
+        return die < newest + oldest ? Pick.OLDEST : Pick.RANDOM;
+    }
+
+    @Override
+    public String toString() {
+        return newest + ":" + oldest + ":" + random;
+    }
+}
@@ -0,0 +1,244 @@
+package maze;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Maze generation based on Kruskal's minimum spanning tree algorithm with random weights:
+ * the edges between neighbouring cells are taken in random order, and every edge that joins
+ * two different sets of cells (kept in a DisjointSet) becomes a passage. The tree is
+ * complete after rows * cols - 1 passages, when the remaining edges are skipped.
+ *
+ * Edges are ints: the cell id times two, plus one for the edge down (zero for the edge
+ * to the right), so the grid may have at most 2^30 cells. The edge array takes 8 bytes
+ * per cell and the sets another 4.
+ */
+class Kruskal {
+    private static final int LEVELS = 24;
+    private static final int BAND_CELLS = 1 << 16; // cells per task when splitting the edges
+    private static final int CHUNK = 1 << 16;      // edges per task when filtering
+
+    private final int rows;
+    private final int cols;
+    private final int size;
+    private final DisjointSet sets;
+    private final CarveSink out;
+    private int joined;
+
+    /**
+     * Class constructor for Kruskal.
+     * @param grid - The grid the maze is generated for; only its size is used.
+     * @param out - Receives a carve event for every passage, in the order they are added.
+     */
+    Kruskal(CellGrid grid, CarveSink out) {
+        if(grid.cellCount() > 1 << 30) {
+            throw new IllegalArgumentException("Kruskal supports at most 2^30 cells, not " + grid.cellCount());
+        }
+        rows = grid.rows();
+        cols = grid.cols();
+        size = grid.size();
+        sets = new DisjointSet(size);
+        this.out = out;
+    }
+
+    /**
+     * Randomized Kruskal: shuffles all edges, then joins them in order.
+     * @param random - Source of randomness.
+     */
+    void generate(SplittableRandom random) {
+        int[] edges = new int[edgeCount(0, rows)];
+        int n = 0;
+        for(int cell = 0; cell < size; cell++) {
+            if(cell % cols < cols - 1) {
+                edges[n++] = cell << 1;
+            }
+            if(cell < size - cols) {
+                edges[n++] = (cell << 1) | 1;
+            }
+        }
+        shuffle(edges, 0, n, random);
+        join(edges, 0, n);
+    }
+
+    /**
+     * Filter-Kruskal: the same distribution of mazes as generate, with most of the work done
+     * in parallel on the current fork/join pool, or the common pool if not called from one.
+     *
+     * Every edge is dealt a random level, level l with probability 2^-(l + 1), and the levels
+     * are joined in order, each one shuffled first; since edges are dealt independently this
+     * takes the edges in a uniformly random order, like generate. Dealing is done in parallel
+     * bands of rows. Before a level is joined, the edges whose cells are already connected are
+     * filtered out of it in parallel; as the first level alone holds half the edges, the later
+     * levels mostly connect cells that are already joined, and little is left for the
+     * sequential shuffle and join. Every edge is dealt once and filtered at most once.
+     * @param seed - The seed; the same seed gives the same maze however the work is split.
+     */
+    void generateFiltered(long seed) {
+        int bandRows = Math.max(1, BAND_CELLS / cols);
+        int bands = (rows + bandRows - 1) / bandRows;
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] bandSeeds = new long[bands];
+        for(int b = 0; b < bands; b++) {
+            bandSeeds[b] = random.nextLong();
+        }
+        // count the edges of every band at every level, then place each band's edges of
+        // a level after those of the bands before it
+        int[] offsets = new int[bands * LEVELS];
+        parallel(bands, b -> deal(bandSeeds[b], b * bandRows, Math.min(rows, (b + 1) * bandRows), null, offsets, b * LEVELS));
+        int[] levelStart = new int[LEVELS + 1];
+        int total = 0;
+        for(int l = 0; l < LEVELS; l++) {
+            levelStart[l] = total;
+            for(int b = 0; b < bands; b++) {
+                int count = offsets[b * LEVELS + l];
+                offsets[b * LEVELS + l] = total;
+                total += count;
+            }
+        }
+        levelStart[LEVELS] = total;
+        int[] edges = new int[total];
+        parallel(bands, b -> deal(bandSeeds[b], b * bandRows, Math.min(rows, (b + 1) * bandRows), edges, offsets, b * LEVELS));
+        for(int l = 0; l < LEVELS && joined < size - 1; l++) {
+            int end = l == 0 ? levelStart[1] : filter(edges, levelStart[l], levelStart[l + 1]);
+            shuffle(edges, levelStart[l], end, random);
+            join(edges, levelStart[l], end);
+        }
+    }
+
+    /**
+     * Deals the edges of rows from to to - 1 out to levels. Without an edge array, counts
+     * them into counts[at + level]; with one, stores them at the positions in counts and
+     * advances those. Both calls must use the same seed to deal the same way.
+     */
+    private void deal(long seed, int from, int to, int[] edges, int[] counts, int at) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for(int cell = from * cols; cell < to * cols; cell++) {
+            if(cell % cols < cols - 1) {
+                int level = Math.min(LEVELS - 1, Long.numberOfTrailingZeros(random.nextLong()));
+                if(edges != null) {
+                    edges[counts[at + level]] = cell << 1;
+                }
+                counts[at + level]++;
+            }
+            if(cell < size - cols) {
+                int level = Math.min(LEVELS - 1, Long.numberOfTrailingZeros(random.nextLong()));
+                if(edges != null) {
+                    edges[counts[at + level]] = (cell << 1) | 1;
+                }
+                counts[at + level]++;
+            }
+        }
+    }
+
+    /**
+     * Removes the edges between cells that are already connected from edges[from, to),
+     * keeping the others at the start of the range. Chunks of the range are filtered in
+     * parallel, which is safe as only DisjointSet.root is called, then packed together.
+     * @return - The end of the remaining edges.
+     */
+    private int filter(int[] edges, int from, int to) {
+        int chunks = (to - from + CHUNK - 1) / CHUNK;
+        int[] kept = new int[chunks];
+        parallel(chunks, i -> {
+            int start = from + i * CHUNK;
+            int end = Math.min(to, start + CHUNK);
+            int n = start;
+            for(int j = start; j < end; j++) {
+                int cell = edges[j] >>> 1;
+                if(sets.root(cell) != sets.root(other(edges[j]))) {
+                    edges[n++] = edges[j];
+                }
+            }
+            kept[i] = n - start;
+        });
+        int n = from;
+        for(int i = 0; i < chunks; i++) {
+            System.arraycopy(edges, from + i * CHUNK, edges, n, kept[i]);
+            n += kept[i];
+        }
+        return n;
+    }
+
+    /**
+     * Takes edges[from, to) in order, carving every edge that joins two different sets,
+     * until the tree is complete.
+     */
+    private void join(int[] edges, int from, int to) {
+        for(int i = from; i < to && joined < size - 1; i++) {
+            int cell = edges[i] >>> 1;
+            if(sets.union(cell, other(edges[i]))) {
+                joined++;
+                out.carve(cell, (edges[i] & 1) == 0 ? CellGrid.R : CellGrid.D);
+            }
+        }
+    }
+
+    /**
+     * @return - The cell at the far end of an edge.
+     */
+    private int other(int edge) {
+        int cell = edge >>> 1;
+        return (edge & 1) == 0 ? cell + 1 : cell + cols;
+    }
+
+    /**
+     * @return - The number of edges owned by rows from to to - 1: right edges, and down edges except in the last row.
+     */
+    private int edgeCount(int from, int to) {
+        int n = to - from;
+        return n * (cols - 1) + (to == rows ? n - 1 : n) * cols;
+    }
+
+    /**
+     * Fisher-Yates shuffle of a[from, to).
+     */
+    private static void shuffle(int[] a, int from, int to, SplittableRandom random) {
+        for(int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    /**
+     * Runs task(0) to task(n - 1) in parallel, on the current fork/join pool or the common pool.
+     */
+    private static void parallel(int n, IntConsumer task) {
+        if(n == 0) {
+            return;
+        }
+        Each all = new Each(0, n, task);
+        if(ForkJoinTask.getPool() != null) {
+            all.invoke();
+        } else {
+            ForkJoinPool.commonPool().invoke(all);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class Each extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer task;
+
+        Each(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                task.accept(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Each(from, middle, task), new Each(middle, to, task));
+            }
+        }
+    }
+}
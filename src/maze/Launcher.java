@@ -0,0 +1,12 @@
+package maze;
+
+/**
+ * Entry point of the JAR. Main extends Application, and the java launcher starts
+ * the JavaFX toolkit before calling main on such classes, which fails on machines
+ * without a display. Going through this class lets --batch run fully headless.
+ */
+public class Launcher {
+    public static void main(String[] args) {
+        Main.main(args);
+    }
+}
@@ -0,0 +1,128 @@
+package maze;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+
+/**
+ * Plays the animation of a maze while it is being generated, taking its events
+ * from a CarveQueue. Frames advance at the configured rate; when the generator gets
+ * ahead and the queue fills up, several steps are drawn as one frame, so that the
+ * generator is not held back by the display.
+ *
+ * Frames can be returned as images, or painted straight to a PixelWriter, in which
+ * case only the cells that changed since the previous frame are repainted.
+ */
+class LivePlayback {
+    private final CarveQueue queue;
+    private final CellGrid maze;
+    private final Replay replay;
+    private FrameRenderer renderer;
+    private final int fps;
+    private long played; // frames due by the clock so far; frames skipped to catch up are not counted
+    private int taken; // frames taken from the queue so far
+    private boolean finished;
+
+    /**
+     * Class constructor for LivePlayback.
+     * @param queue - The queue the generator puts its events in.
+     * @param maze - The grid being generated; only read once the final frame has arrived.
+     * @param fps - Frames per second to play at while the generator keeps up.
+     */
+    LivePlayback(CarveQueue queue, CellGrid maze, int fps) {
+        this.queue = queue;
+        this.maze = maze;
+        this.fps = fps;
+        replay = new Replay(maze.rows(), maze.cols());
+        renderer = new FrameRenderer(maze.rows(), maze.cols());
+    }
+
+    /**
+     * Draws the frames at the given scale and only within a view, as AnimatedImage.setView.
+     * Called before the first frame.
+     * @param scale - Scale factor.
+     * @param w - Width of the view in pixels.
+     * @param h - Height of the view in pixels.
+     */
+    void setView(int scale, int w, int h) {
+        renderer = new FrameRenderer(maze.rows(), maze.cols(), scale, w, h);
+    }
+
+    /**
+     * Advances the animation to the given time and renders it.
+     * @param seconds - Time since playback started.
+     * @return - The frame to show, or null if nothing has changed since the last call.
+     */
+    Image frame(double seconds) {
+        if(!advance(seconds)) {
+            return null;
+        }
+        if(finished) {
+            return renderer.render(maze, null, -1);
+        }
+        return renderer.render(replay.grid(), replay.marks(), replay.current());
+    }
+
+    /**
+     * Advances the animation to the given time and paints the cells that changed.
+     * @param out - Where to paint, usually the pixel writer of a Canvas.
+     * @param seconds - Time since playback started.
+     * @return - False if nothing has changed since the last call.
+     */
+    boolean paint(PixelWriter out, double seconds) {
+        if(!advance(seconds)) {
+            return false;
+        }
+        if(finished) {
+            renderer.paintFinal(out, maze);
+        } else {
+            renderer.paint(out, replay);
+        }
+        replay.clean();
+        return true;
+    }
+
+    /**
+     * Takes the events due by the given time from the queue.
+     * @param seconds - Time since playback started.
+     * @return - False if nothing has changed since the last call.
+     */
+    private boolean advance(double seconds) {
+        if(finished) {
+            return false;
+        }
+        long target = (long) (seconds * fps) + 1;
+        int before = taken;
+        if(target > played) {
+            // frames the generator has not produced yet are not owed later
+            taken += queue.drain(replay, (int) Math.min(target - played, Integer.MAX_VALUE));
+            played = target;
+        }
+        // skip ahead rather than let the producer wait on a full queue
+        while(queue.size() > queue.capacity() / 4) {
+            taken += queue.drain(replay, 1);
+        }
+        if(taken == before) {
+            return false;
+        }
+        if(replay.current() == -1) {
+            // the final frame: the generator is done with the grid, which now has its entrance and exit
+            finished = true;
+        }
+        return true;
+    }
+
+    /**
+     * @return - The index of the frame shown last, in the numbering of the finished
+     *           animation, or -1 before the first frame.
+     */
+    int position() {
+        return taken - 1;
+    }
+
+    /**
+     * @return - True once the final frame has been returned.
+     */
+    boolean isFinished() {
+        return finished;
+    }
+}
@@ -2,26 +2,28 @@ package maze;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.embed.swing.SwingFXUtils;
+import javafx.concurrent.Task;
 import javafx.event.EventHandler;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.*;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelFormat;
-import javafx.scene.image.PixelReader;
-import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
 import javafx.stage.*;
 
-import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.IOException;
 import java.lang.Math;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -31,25 +33,95 @@ public class Main extends Application {
     private static int cols = 20;
     static final int cellSize = 4;
     static int scaleFactor = 4;
+    private static final int QUEUE_EVENTS = 1 << 16; // events buffered between generator and live playback, 8 bytes each
+    private static final int LOG_EVENTS = 1 << 23;    // events kept to seek through after live playback, at most 64 MB
+    private static SolveMode solveMode = SolveMode.BFS;
+    private static GrowthPolicy growthPolicy = GrowthPolicy.NEWEST;
+    private static MazeFile opened; // shown instead of a generated maze at startup, see --open
 
     private MazeMode currentMode = MazeMode.BACKTRACK;
     private Maze maze;
-    private List<Image> mazeFrames;
+    private AnimatedImage mazeAnimation;
+    private AnimationTimer animationTimer;
+    private MazeViewer viewer; // shows the maze instead of the animation once zoomed or panned
+    private boolean fitsWindow; // whether a whole frame fits in the canvas at the scale factor
+    private int animationScale; // largest scale, at least 1, at which a whole frame fits in the canvas
+    private double dragX;
+    private double dragY;
+    private Task<Maze> generation;
+    // one low-priority daemon thread, so a running generation never competes with the FX thread for long
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "maze-generator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
 
     @Override
     public void start(Stage primaryStage) {
+        if(opened != null && opened.getMode() != null) {
+            currentMode = opened.getMode();
+        }
         primaryStage.setTitle(currentMode.toString());
-        doNewMaze(false);
         Group root = new Group();
         Scene scene = new Scene(root);
         primaryStage.setScene(scene);
 
-        Canvas canvas = new Canvas(mazeFrames.get(0).getWidth(), mazeFrames.get(0).getHeight());
+        // mazes larger than the screen are shown in a pan and zoom viewer, see MazeViewer
+        FrameRenderer size = new FrameRenderer(rows, cols);
+        Rectangle2D screen = Screen.getPrimary().getVisualBounds();
+        Canvas canvas = new Canvas(Math.min(size.getWidth(), Math.floor(screen.getWidth() * 0.9)),
+                Math.min(size.getHeight(), Math.floor(screen.getHeight() * 0.9)));
+        fitsWindow = canvas.getWidth() == size.getWidth() && canvas.getHeight() == size.getHeight();
+        // larger mazes are animated at a smaller scale, or at scale 1 in a view that follows the current cell
+        animationScale = (int) Math.max(1, Math.min(scaleFactor,
+                Math.min(Math.floor(canvas.getWidth() / (cols * cellSize + cellSize / 2)),
+                        Math.floor(canvas.getHeight() / (rows * cellSize + cellSize / 2)))));
         root.getChildren().add(canvas);
+        ProgressBar progress = new ProgressBar();
+        progress.setVisible(false);
+        root.getChildren().add(progress);
 
         GraphicsContext gc = canvas.getGraphicsContext2D();
+        // dragging across the canvas scrubs through the animation, or pans the viewer;
+        // the mouse wheel zooms
+        EventHandler<MouseEvent> drag = e -> {
+            if(viewer != null) {
+                viewer.pan(e.getX() - dragX, e.getY() - dragY);
+                viewer.draw(gc);
+            } else if(mazeAnimation != null) {
+                mazeAnimation.setPaused(true);
+                mazeAnimation.seek(e.getX() / canvas.getWidth() * (mazeAnimation.size() - 1));
+                doAnimation(gc, mazeAnimation);
+            }
+            dragX = e.getX();
+            dragY = e.getY();
+        };
+        canvas.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+            if(viewer == null) {
+                drag.handle(e);
+            }
+        });
+        canvas.setOnMouseDragged(drag);
+        canvas.setOnScroll(e -> {
+            if(maze != null && !isGenerating() && e.getDeltaY() != 0) {
+                openViewer();
+                viewer.zoom(e.getDeltaY() > 0 ? 1 : -1, e.getX(), e.getY());
+                viewer.draw(gc);
+            }
+        });
 
         primaryStage.show();
+        if(opened != null) {
+            maze = new Maze(opened.getGrid());
+            maze.setSeed(opened.getSeed());
+            openViewer();
+            viewer.draw(gc);
+        } else {
+            requestMaze(false, gc, progress);
+        }
 
         EventHandler<KeyEvent> handleKey = new EventHandler<KeyEvent>() {
             /**
@@ -57,33 +129,35 @@ public class Main extends Application {
              * Pressing F5 will generate a new maze given the selected generation algorithm WITHOUT animation.
              * Pressing F6 will do the same WITH animation
              * Pressing 'X' will export the final maze frame as an image file.
+             * Pressing 'S' will solve the maze and draw the path on the final frame.
              * Pressing the left and right arrow keys will cycle between maze generation algorithms, changing the selection.
+             * The remaining keys control the animation's playhead, see controlAnimation,
+             * and the zoom level, see controlViewer.
              * @param e - The KeyEvent to be handled.
              */
             @Override
             public void handle(KeyEvent e) {
+                controlAnimation(e.getCode(), gc);
+                controlViewer(e.getCode(), gc);
                 if(e.getCode() == KeyCode.F5) {
+                    requestMaze(false, gc, progress);
+                }
+                if(e.getCode() == KeyCode.F6) {
+                    requestMaze(true, gc, progress);
+                }
+                if(e.getCode() == KeyCode.B) {
+                    saveMaze();
+                }
+                if(e.getCode() == KeyCode.X) {
                     try {
-                        doNewMaze(false);
-                        doAnimation(gc, mazeFrames);
-                        System.out.printf("\nMaze generated in %d iterations.\n", maze.iters);
-                        scene.addEventFilter(KeyEvent.KEY_PRESSED, this);
+                        exportImage();
                     } catch(Exception ex) {
                         ex.printStackTrace();
                     }
                 }
-                if(e.getCode() == KeyCode.F6) try {
-                    System.out.println("\nLoading...");
-                    doNewMaze(true);
-                    doAnimation(gc, mazeFrames);
-                    System.out.printf("\nMaze generated in %d iterations.\n", maze.iters);
-                    scene.addEventFilter(KeyEvent.KEY_PRESSED, this);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-                if(e.getCode() == KeyCode.X) {
+                if(e.getCode() == KeyCode.S) {
                     try {
-                        exportImage(mazeFrames);
+                        solveMaze(gc);
                     } catch(Exception ex) {
                         ex.printStackTrace();
                     }
@@ -117,91 +191,399 @@ public class Main extends Application {
     }
 
     /**
-     * Creates a new maze and starts generation based on the currently selected
-     * generation algorithm. If "animate" is true, a list of images corresponding
-     * to each step of the maze generation will also be generated.
+     * Creates a new maze and starts generating it on the background generator thread,
+     * based on the currently selected generation algorithm. If "animate" is true, the
+     * generation is shown as an animation while it runs, see LivePlayback.
+     * A request cancels the one still in flight, so repeated key presses collapse into
+     * a single run of the last request. The window stays responsive meanwhile; a
+     * progress bar shows how much of the maze has been carved. Mazes too large for the
+     * window are animated at animationScale, through a view the size of the canvas if
+     * they are still too large; without animation they are shown in the viewer.
      * @param animate - Whether or not the maze generation should be displayed as an animation frame-by-frame
+     * @param gc - The graphics context to draw the maze to.
+     * @param progress - The progress bar to show while generating.
      */
-    private void doNewMaze(boolean animate) {
-        maze = new Maze(rows, cols, animate);
-        switch(currentMode) {
-            case BACKTRACK:
-                maze.dfs();
+    private void requestMaze(boolean animate, GraphicsContext gc, ProgressBar progress) {
+        if(generation != null) {
+            generation.cancel();
+        }
+        MazeMode mode = currentMode;
+        boolean record = animate;
+        double w = gc.getCanvas().getWidth();
+        double h = gc.getCanvas().getHeight();
+        if(animate && !fitsWindow) {
+            FrameRenderer frame = new FrameRenderer(rows, cols, animationScale, (int) w, (int) h);
+            System.out.printf("\nThe maze is larger than the window, so it is animated at scale %d%s.", animationScale,
+                    frame.getViewWidth() < frame.getWidth() || frame.getViewHeight() < frame.getHeight()
+                            ? " in a view that follows the current cell" : "");
+        }
+        Maze m = new Maze(rows, cols, record);
+        m.setPolicy(growthPolicy);
+        mazeAnimation = null;
+        viewer = null;
+        LivePlayback live = null;
+        if(record) {
+            // play the animation while the maze is generated
+            CarveQueue queue = new CarveQueue(QUEUE_EVENTS);
+            m.setEventSink(queue, LOG_EVENTS);
+            live = new LivePlayback(queue, m.getGrid(), fps);
+            live.setView(animationScale, (int) w, (int) h);
+            doPlayback(gc, live);
+        }
+        LivePlayback playback = live;
+        Task<Maze> task = new Task<Maze>() {
+            @Override
+            protected Maze call() {
+                m.setProgress((carved, total) -> {
+                    if(isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    updateProgress(carved, total);
+                });
+                m.generate(mode);
+                m.getAnalytics(); // measured here rather than on the FX thread
+                if(fitsWindow || record) {
+                    m.getAnimation(); // take the keyframes here rather than on the FX thread
+                }
+                return m;
+            }
+        };
+        task.setOnSucceeded(e -> {
+            maze = m;
+            if(fitsWindow || record) {
+                mazeAnimation = maze.getAnimation();
+                if(mazeAnimation == null) {
+                    // the live playback plays on to the end, but cannot be seeked
+                    System.out.printf("\nThe animation has more than %d events, so it is not kept for seeking.", LOG_EVENTS);
+                } else {
+                    mazeAnimation.setView(animationScale, (int) w, (int) h);
+                    if(record) {
+                        // carry on from the frame the live playback has got to, now with seeking
+                        mazeAnimation.seek(playback.position());
+                    }
+                    doAnimation(gc, mazeAnimation);
+                }
+            } else {
+                openViewer();
+                viewer.draw(gc);
+            }
+            System.out.printf("\nMaze generated in %d iterations.\n%s\n%s\n", maze.iters, maze.getMetrics(), maze.getAnalytics());
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
+        progress.progressProperty().bind(task.progressProperty());
+        progress.visibleProperty().bind(task.runningProperty());
+        generation = task;
+        generator.execute(task);
+    }
+
+    /**
+     * Plays an animation to the graphics context (gc) from its playhead, at a constant
+     * "frames per second" value times its playback speed. The timer keeps running at the
+     * end of the animation, so the playhead can still be moved back; a frame is only
+     * painted when the playhead has moved onto a different one, and then only the cells
+     * that changed are repainted, straight to the canvas.
+     * @param gc - The graphics context to draw pixels to.
+     * @param anim - The animation to draw.
+     */
+    private void doAnimation(GraphicsContext gc, AnimatedImage anim) {
+        anim.setDuration((double)1/fps);
+
+        if(animationTimer != null) {
+            animationTimer.stop();
+        }
+        anim.invalidate(); // the canvas may show something else, e.g. a solution or the live playback
+        clearMargin(gc);
+        animationTimer = new AnimationTimer()
+        {
+            private long lastNanoTime = -1;
+            private int drawn = -1;
+
+            public void handle(long currentNanoTime)
+            {
+                if(lastNanoTime >= 0) {
+                    anim.advance((currentNanoTime - lastNanoTime) / 1000000000.0);
+                }
+                lastNanoTime = currentNanoTime;
+
+                if(anim.getPlayheadFrame() != drawn) {
+                    drawn = anim.getPlayheadFrame();
+                    anim.paintFrame(drawn, gc.getPixelWriter());
+                }
+            }
+        };
+        animationTimer.start();
+    }
+
+    /**
+     * Moves the playhead of the current animation in response to a key press.
+     * SPACE pauses and resumes, COMMA and PERIOD step one frame back and forward,
+     * PAGE_UP and PAGE_DOWN jump a tenth of the animation back and forward, HOME and END
+     * jump to the first and last frame, and UP and DOWN double and halve the playback speed.
+     * @param code - The key that was pressed.
+     * @param gc - The graphics context to draw pixels to.
+     */
+    private void controlAnimation(KeyCode code, GraphicsContext gc) {
+        AnimatedImage anim = mazeAnimation;
+        if(anim == null) {
+            return;
+        }
+        int last = anim.size() - 1;
+        int tenth = Math.max(1, anim.size() / 10);
+        switch(code) {
+            case SPACE:
+                if(anim.isPaused() && anim.getPlayheadFrame() == last) {
+                    anim.seek(0); // play again from the start
+                }
+                anim.setPaused(!anim.isPaused());
+                break;
+            case COMMA:
+                anim.step(-1);
+                break;
+            case PERIOD:
+                anim.step(1);
                 break;
-            case PRIM:
-                maze.prim();
+            case PAGE_UP:
+                anim.seek(anim.getPlayheadFrame() - tenth);
                 break;
-            case COMBO:
-                maze.combo();
+            case PAGE_DOWN:
+                anim.seek(anim.getPlayheadFrame() + tenth);
                 break;
-            case BTREE:
-                maze.btree();
+            case HOME:
+                anim.seek(0);
                 break;
-            case ALDOUSBRODER:
-                maze.ab();
+            case END:
+                anim.seek(last);
                 break;
+            case UP:
+                anim.setSpeed(Math.min(anim.getSpeed() * 2, 1024));
+                break;
+            case DOWN:
+                anim.setSpeed(Math.max(anim.getSpeed() / 2, 1.0 / 64));
+                break;
+            default:
+                return;
         }
-        mazeFrames = maze.getFrames();
+        // restarts drawing if it was stopped, e.g. by solveMaze or the viewer
+        viewer = null;
+        doAnimation(gc, anim);
     }
 
     /**
-     * Draws each frame in a list of frames to the graphics context (gc) sequentially
-     * a constant "frames per second" value.
+     * Zooms the viewer in response to a key press: PLUS and MINUS zoom in and out
+     * about the centre of the canvas, and 0 fits the whole maze in the window.
+     * @param code - The key that was pressed.
      * @param gc - The graphics context to draw pixels to.
-     * @param frames - The list of images to draw.
      */
-    private void doAnimation(GraphicsContext gc, List<Image> frames) {
-        AnimatedImage anim = new AnimatedImage(frames);
-        anim.setDuration((double)1/fps);
+    private void controlViewer(KeyCode code, GraphicsContext gc) {
+        if(maze == null || isGenerating()) {
+            return;
+        }
+        double w = gc.getCanvas().getWidth();
+        double h = gc.getCanvas().getHeight();
+        switch(code) {
+            case EQUALS:
+            case ADD:
+                openViewer();
+                viewer.zoom(1, w / 2, h / 2);
+                break;
+            case MINUS:
+            case SUBTRACT:
+                openViewer();
+                viewer.zoom(-1, w / 2, h / 2);
+                break;
+            case DIGIT0:
+            case NUMPAD0:
+                openViewer();
+                viewer.fit(w, h);
+                break;
+            default:
+                return;
+        }
+        viewer.draw(gc);
+    }
+
+    /**
+     * While a maze is being generated, the maze field still holds the previous one and
+     * the canvas may show the live playback, the only thing taking its events; so the
+     * keys and the mouse wheel that would stop it or draw the previous maze are ignored.
+     * @return - Whether a generation has been requested and has not finished.
+     */
+    private boolean isGenerating() {
+        return generation != null && !generation.isDone();
+    }
 
+    /**
+     * Stops the animation and shows the current maze in the viewer, creating the
+     * viewer at the scale factor's zoom level if it is not open yet.
+     */
+    private void openViewer() {
+        if(animationTimer != null) {
+            animationTimer.stop();
+        }
+        if(viewer == null) {
+            viewer = new MazeViewer(maze.getGrid(), scaleFactor);
+        }
+    }
+
+    /**
+     * Fills the canvas grey where an animation drawn at a smaller scale than the canvas
+     * was sized for does not reach, as the viewer does around the maze.
+     * @param gc - The graphics context to draw pixels to.
+     */
+    private void clearMargin(GraphicsContext gc) {
+        if(!fitsWindow) {
+            gc.setFill(Color.DIMGRAY);
+            gc.fillRect(0, 0, gc.getCanvas().getWidth(), gc.getCanvas().getHeight());
+        }
+    }
+
+    /**
+     * Paints the frames of a maze that is still being generated, as they arrive,
+     * repainting only the cells that changed.
+     * @param gc - The graphics context to draw pixels to.
+     * @param playback - The live animation to draw.
+     */
+    private void doPlayback(GraphicsContext gc, LivePlayback playback) {
         final long startNanoTime = System.nanoTime();
 
-        new AnimationTimer()
+        if(animationTimer != null) {
+            animationTimer.stop();
+        }
+        clearMargin(gc);
+        animationTimer = new AnimationTimer()
         {
             public void handle(long currentNanoTime)
             {
                 double t = (currentNanoTime - startNanoTime) / 1000000000.0;
 
-                gc.drawImage( anim.getFrameAtTime(t), 0, 0 );
-                if(anim.getFrameIndexAtTime(t) == frames.size() - 1) {
+                playback.paint(gc.getPixelWriter(), t);
+                if(playback.isFinished()) {
                     stop();
                 }
             }
-        }.start();
+        };
+        animationTimer.start();
     }
 
     /**
-     * Exports the last image in a given list of images (frames) as a file in
-     * {home}/mazes/maze-{date}.png.
-     * @param frames - The list of images to export from.
+     * Solves the current maze from its entrance to its exit and draws the
+     * solution over the final frame. Does nothing while a new maze is being generated.
+     * @param gc - The graphics context to draw pixels to.
      */
-    private void exportImage(List<Image> frames) {
-        if(frames.size() != 0) {
-            Image finalImage = frames.get(frames.size() - 1);
-            int width = (int)finalImage.getWidth();
-            int height = (int)finalImage.getHeight();
-            PixelReader pr = finalImage.getPixelReader();
-            byte[] buffer = new byte[width * height * 4];
-            WritablePixelFormat<ByteBuffer> format = PixelFormat.getByteBgraInstance();
-            pr.getPixels(0, 0, width, height, format, buffer, 0, width * 4);
+    private void solveMaze(GraphicsContext gc) {
+        if(maze == null || isGenerating()) {
+            return;
+        }
+        Solver solver = new Solver(maze.getGrid());
+        long start = System.nanoTime();
+        int[] path = solver.solve(solveMode);
+        double millis = (System.nanoTime() - start) / 1000000.0;
+        if(path == null) {
+            System.out.println("\nThe maze has no solution.");
+            return;
+        }
+        if(viewer != null || !fitsWindow) {
+            openViewer();
+            viewer.setPath(path);
+            viewer.draw(gc);
+        } else {
+            if(animationTimer != null) {
+                animationTimer.stop();
+            }
+            FrameRenderer renderer = new FrameRenderer(maze.getGrid().rows(), maze.getGrid().cols());
+            gc.drawImage(renderer.renderSolved(maze.getGrid(), path), 0, 0);
+        }
+        System.out.printf("\nMaze solved with %s in %.3f ms: path length %d, %d cells explored.\n",
+                solveMode, millis, path.length, solver.getExplored());
+    }
 
+    /**
+     * Exports the current maze as an image file in
+     * {home}/mazes/maze-{date}.png.
+     * The image is encoded straight from the cell grid, see PngExport.
+     */
+    private void exportImage() {
+        if(maze != null) {
             // get date and time for file name
             DateTimeFormatter dtf = DateTimeFormatter.ofPattern("ddMMyy-HHmmss");
             LocalDateTime now = LocalDateTime.now();
-            String path = String.format("%s\\mazes\\maze-%s.png", System.getProperty("user.home"), dtf.format(now));
-            File imageFile = new File(path);
+            File imageFile = new File(new File(System.getProperty("user.home"), "mazes"),
+                    String.format("maze-%s.png", dtf.format(now)));
             //noinspection ResultOfMethodCallIgnored
             imageFile.getParentFile().mkdirs();
 
             // try to write the file. access may be denied etc.
             try {
-                ImageIO.write(SwingFXUtils.fromFXImage(finalImage, null), "png", imageFile);
-                System.out.printf("Successfully dumped maze image to %s", path);
+                PngExport.write(maze.getGrid(), scaleFactor, imageFile);
+                System.out.printf("Successfully dumped maze image to %s", imageFile.getPath());
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+
+        }
+    }
+
+    /**
+     * Saves the current maze in the binary maze format, see MazeFile, as
+     * {home}/mazes/maze-{date}.maze. It can be shown again with --open.
+     */
+    private void saveMaze() {
+        if(maze != null) {
+            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("ddMMyy-HHmmss");
+            File file = new File(new File(System.getProperty("user.home"), "mazes"),
+                    String.format("maze-%s%s", dtf.format(LocalDateTime.now()), MazeFile.EXTENSION));
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            try {
+                MazeFile.write(maze.getGrid(), maze.getMode(), maze.getSeed(), file);
+                System.out.printf("\nSaved maze to %s", file.getPath());
             } catch(IOException ex) {
                 ex.printStackTrace();
             }
+        }
+    }
+
+    /**
+     * Opens a maze saved with the B key or --format maze.
+     * @param file - The file to open.
+     * @return - Whether the maze was opened.
+     */
+    private static boolean openMaze(File file) {
+        long start = System.nanoTime();
+        try {
+            opened = MazeFile.open(file);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+        CellGrid grid = opened.getGrid();
+        rows = grid.rows();
+        cols = grid.cols();
+        System.out.printf("Opened a %dx%d %s maze from %s in %.3f ms.%n", rows, cols,
+                opened.getMode() == null ? "" : opened.getMode().toString(), file.getPath(),
+                (System.nanoTime() - start) / 1000000.0);
+        return true;
+    }
 
+    /**
+     * Generates a maze with Eller's algorithm and streams it row by row into a PNG file,
+     * without ever holding the whole maze in memory. Runs headless.
+     * @param file - Destination file.
+     * @return - Whether the maze was written successfully.
+     */
+    private static boolean streamMaze(File file) {
+        System.out.printf("Streaming a %dx%d ELLER maze to %s...%n", rows, cols, file.getPath());
+        long start = System.nanoTime();
+        try(PngExport.RowWriter writer = new PngExport.RowWriter(rows, cols, scaleFactor, file, true, true)) {
+            new Eller(cols, new Random()).generate(rows, writer);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+            return false;
         }
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        System.out.printf("Wrote %d rows in %.3f s: %.0f rows/sec, %.0f cells/sec%n",
+                rows, seconds, rows / seconds, (double) rows * cols / seconds);
+        return true;
     }
 
     /**
@@ -210,15 +592,54 @@ public class Main extends Application {
     private static void showUsage() {
         System.out.println("Usage: java {ApplicationName} " +
                 "[--rows n] [--cols n] [--scalefactor n] [--fps n]");
+        System.out.println("       java {ApplicationName} --batch n [--mode MODE] [--out dir] [--threads n] " +
+                "[--format png|maze] [--storage heap|direct|mapped] [--policy P] [--solve BFS|ASTAR|DEADEND] [--queries n] [--tiles n] [--check] [--rows n] [--cols n] [--scalefactor n]");
+        System.out.println("       java {ApplicationName} --stream file [--rows n] [--cols n] [--scalefactor n]");
+        System.out.println("       java {ApplicationName} --open file.maze [--scalefactor n] [--solve BFS|ASTAR|DEADEND]");
         System.out.println("Program controls:");
         System.out.println("F5: Generate and show maze WITHOUT animation.");
         System.out.println("F6: Generate and show maze WITH animation.");
         System.out.println("X:  Export maze image to {home directory}/mazes/.");
+        System.out.println("B:  Save the maze in the compact binary format to {home directory}/mazes/.");
+        System.out.println("S:  Solve the maze and draw the solution (method set with --solve, default BFS).");
         System.out.println("LEFT and RIGHT arrow keys: Cycle between maze generation methods.");
+        System.out.println("SPACE: Pause or resume the animation. COMMA and PERIOD: Step one frame back or forward.");
+        System.out.println("PAGE UP and PAGE DOWN: Jump a tenth of the animation back or forward. " +
+                "HOME and END: Jump to the first or last frame.");
+        System.out.println("UP and DOWN arrow keys: Double or halve the playback speed. Drag on the maze to scrub.");
+        System.out.println("PLUS and MINUS or the mouse wheel: Zoom in or out; drag to pan once zoomed. " +
+                "0: Fit the whole maze in the window. Mazes larger than the window are shown this way once generated, " +
+                "and animated at a smaller scale or in a view that follows the current cell.");
+        System.out.println("--batch n: Generate n mazes headlessly (no window) and print the throughput. " +
+                "Mazes are written as PNG files to the --out directory, if given, and solved if --solve is given.");
+        System.out.println("--format maze: Write the --batch mazes in the compact binary format instead of PNG. " +
+                "--open file: Show a maze saved in that format, without generating one.");
+        System.out.println("--storage S: Where --batch keeps the cells of a maze: heap (default), direct (off-heap buffers, " +
+                "limited by -XX:MaxDirectMemorySize) or mapped (a memory-mapped temporary file), for mazes larger than the heap.");
+        System.out.println("--queries n: Index every batch maze for path queries (see PathIndex) and time n random " +
+                "distance and n random path queries on it.");
+        System.out.println("--tiles n: Split each batch maze into tiles of about n x n cells that are generated in parallel " +
+                "and stitched together. --check verifies that every batch maze is perfect.");
+        System.out.println("--stream file: Generate one maze with Eller's algorithm and write it to a PNG file " +
+                "row by row, using memory proportional to the number of columns only.");
+        System.out.println("--policy P: How the GROWINGTREE mode picks the cell to grow from: newest, oldest, random, mix, " +
+                "or weights newest:oldest:random such as 3:0:1. Default is newest.");
     }
 
     public static void main(String[] args) {
         List<String> cmd = Arrays.asList(args);
+        int batch = 0;
+        MazeMode batchMode = MazeMode.BACKTRACK;
+        File batchOut = null;
+        File streamOut = null;
+        int tileSize = 0;
+        boolean check = false;
+        boolean batchSolve = false;
+        int queries = 0;
+        boolean binary = false;
+        GridStorage storage = GridStorage.HEAP;
+        File openFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
         try {
             if (cmd.contains("--rows")) {
                 cols = Integer.parseInt(args[cmd.indexOf("--rows") + 1]);
@@ -232,12 +653,78 @@ public class Main extends Application {
             if(cmd.contains("--fps")) {
                 fps = Math.min(Integer.parseInt(args[cmd.indexOf("--fps") + 1]), 60);
             }
+            if(cmd.contains("--batch")) {
+                batch = Integer.parseInt(args[cmd.indexOf("--batch") + 1]);
+            }
+            if(cmd.contains("--mode")) {
+                batchMode = MazeMode.valueOf(args[cmd.indexOf("--mode") + 1].toUpperCase());
+            }
+            if(cmd.contains("--out")) {
+                batchOut = new File(args[cmd.indexOf("--out") + 1]);
+            }
+            if(cmd.contains("--solve")) {
+                solveMode = SolveMode.valueOf(args[cmd.indexOf("--solve") + 1].toUpperCase());
+                batchSolve = true;
+            }
+            if(cmd.contains("--queries")) {
+                queries = Integer.parseInt(args[cmd.indexOf("--queries") + 1]);
+            }
+            if(cmd.contains("--stream")) {
+                streamOut = new File(args[cmd.indexOf("--stream") + 1]);
+            }
+            if(cmd.contains("--tiles")) {
+                tileSize = Integer.parseInt(args[cmd.indexOf("--tiles") + 1]);
+            }
+            if(cmd.contains("--policy")) {
+                growthPolicy = GrowthPolicy.parse(args[cmd.indexOf("--policy") + 1]);
+            }
+            if(cmd.contains("--format")) {
+                String format = args[cmd.indexOf("--format") + 1].toLowerCase();
+                if(!format.equals("png") && !format.equals("maze")) {
+                    throw new IllegalArgumentException("Unknown format " + format);
+                }
+                binary = format.equals("maze");
+            }
+            if(cmd.contains("--storage")) {
+                storage = GridStorage.valueOf(args[cmd.indexOf("--storage") + 1].toUpperCase());
+            }
+            if(cmd.contains("--open")) {
+                openFile = new File(args[cmd.indexOf("--open") + 1]);
+            }
+            check = cmd.contains("--check");
+            if(cmd.contains("--threads")) {
+                threads = Integer.parseInt(args[cmd.indexOf("--threads") + 1]);
+            }
+            if(batch < 0 || threads < 1 || tileSize < 0 || tileSize == 1 || queries < 0) {
+                throw new IllegalArgumentException("Invalid batch arguments");
+            }
         }
         catch(Exception e) {
             System.out.println("Your command-line arguments were invalid. Try again.");
             showUsage();
             System.exit(0);
         }
+        if(openFile != null && !openMaze(openFile)) {
+            System.exit(1);
+        }
+        if(streamOut != null) {
+            System.exit(streamMaze(streamOut) ? 0 : 1);
+        }
+        if(batch > 0) {
+            // headless: never start the JavaFX toolkit
+            Batch job = new Batch(batch, batchMode, rows, cols, batchOut, threads);
+            if(batchSolve) {
+                job.setSolveMode(solveMode);
+            }
+            job.setTileSize(tileSize);
+            job.setCheck(check);
+            job.setPolicy(growthPolicy);
+            job.setBinaryOutput(binary);
+            job.setStorage(storage);
+            job.setQueries(queries);
+            int failures = job.run();
+            System.exit(failures == 0 ? 0 : 1);
+        }
         showUsage();
         launch(args);
     }
@@ -1,23 +1,48 @@
 package maze;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
-import javafx.scene.image.*;
-import javafx.scene.paint.Color;
-import javafx.util.Pair;
-
 @SuppressWarnings("unused")
 class Maze {
-    int iters;
+    long iters;
     private int rows;
     private int cols;
     private int currentRow = 0;
     private int currentCol = 0;
     private boolean animate;
-    private List<Image> frames;
+    private boolean record;
+    private CarveLog log;
+    private CarveSink events; // where recorded events go: the log, and a queue for live playback
+    private AnimatedImage animation;
+    private MazeAnalytics analytics;
+    private int frames;
     private Random rng;
-    private List<Pair<Integer, Integer>> borderCells;
-    Stack<Pair<Integer, Integer>> stack;
-    private int[][][] matrix;
+    private long seed;
+    private MazeMode mode;
+    private Frontier frontier;
+    private GrowthPolicy policy = GrowthPolicy.NEWEST;
+    private CellGrid grid;
+    private int open;       // cells currently on the frontier/stack
+    private int peakOpen;
+    private long entryExitNanos;
+    private GenerationMetrics metrics;
+    private Progress progress;
+    private long carved;
+
+    /**
+     * Receives the progress of a generation run. Called on the generating thread every
+     * PROGRESS_INTERVAL carved passages; throwing from update aborts the run.
+     */
+    interface Progress {
+        /**
+         * @param carved - Passages carved so far.
+         * @param total - Passages in the finished maze.
+         */
+        void update(long carved, long total);
+    }
+
+    private static final int PROGRESS_INTERVAL = 1 << 12;
 
     /**
      * Class constructor for Maze.
@@ -26,14 +51,28 @@ class Maze {
      * @param a - Whether or not the maze should be animated when displaying.
      */
     Maze(int r, int c, boolean a) {
+        this(r, c, a, GridStorage.HEAP);
+    }
+
+    /**
+     * Class constructor for Maze, with the cells kept in the given storage. Off the heap, the
+     * maze may have more than 2^31 cells, though only BTREE, SIDEWINDER and ELLER can generate
+     * such a maze directly; the other modes keep int cell ids, but can fill it through
+     * TiledGenerator.
+     * @param r - Number of rows.
+     * @param c - Number of columns.
+     * @param a - Whether or not the maze should be animated when displaying.
+     * @param storage - Where to keep the cells.
+     */
+    Maze(int r, int c, boolean a, GridStorage storage) {
         animate = a;
         rows = r;
         cols = c;
-        matrix = new int[rows][cols][5]; // L, R, U, D, visited?
-        rng = new Random();
-        frames = new LinkedList<>();
-        borderCells = new LinkedList<>();
-        stack = new Stack<>();
+        grid = storage.createGrid(rows, cols);
+        setSeed(new Random().nextLong());
+        record = animate;
+        log = new CarveLog();
+        events = log;
         iters = 0;
     }
 
@@ -42,640 +81,677 @@ class Maze {
     }
 
     /**
-     * Depth-first search maze generation algorithm (recursive backtracking)
+     * Class constructor for a maze that is already finished, such as one opened with MazeFile.
+     * It has no recorded generation, so it cannot be animated.
+     * @param g - The finished maze.
+     */
+    Maze(CellGrid g) {
+        rows = g.rows();
+        cols = g.cols();
+        grid = g;
+        setSeed(0);
+        log = new CarveLog();
+        events = log;
+    }
+
+    /**
+     * Seeds the random numbers of the generators; most of them then always generate the same
+     * maze for the same seed. A random seed is chosen when the maze is created.
+     * @param s - The seed.
+     */
+    void setSeed(long s) {
+        seed = s;
+        rng = new Random(s);
+    }
+
+    /**
+     * @return - The seed set with setSeed.
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return - The algorithm of the last generate call, or null if it has not been called.
+     */
+    MazeMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sends the events recorded during generation to the given sink as they happen,
+     * as well as keeping up to keep of them in the carve log. Used to play the animation
+     * while the maze is still being generated; getAnimation can still seek through it
+     * afterwards, unless there were more events than that and the log was dropped.
+     * @param sink - The receiver of the events.
+     * @param keep - The most events to keep in the carve log.
+     */
+    void setEventSink(CarveSink sink, int keep) {
+        log = new CarveLog(keep);
+        events = CarveSink.both(log, sink);
+    }
+
+    /**
+     * Sets how the GROWINGTREE mode picks the cell to grow from.
+     * @param p - The selection policy; NEWEST by default.
+     */
+    void setPolicy(GrowthPolicy p) {
+        policy = p;
+    }
+
+    /**
+     * Sets the listener that is told how far generation has got, and that can cancel it.
+     * @param p - The listener, or null for none.
+     */
+    void setProgress(Progress p) {
+        progress = p;
+    }
+
+    /**
+     * Runs the generation algorithm corresponding to the given mode.
+     * @param mode - The generation algorithm to use.
+     * @return - Measurements of the run.
+     * @throws IllegalStateException - if the grid is read-only.
+     */
+    GenerationMetrics generate(MazeMode mode) {
+        if(grid.isReadOnly()) {
+            throw new IllegalStateException("A maze opened from a file cannot be generated again");
+        }
+        if(grid.cellCount() > Integer.MAX_VALUE && mode != MazeMode.BTREE && mode != MazeMode.SIDEWINDER
+                && mode != MazeMode.ELLER) {
+            throw new IllegalArgumentException(String.format(
+                    "%s cannot generate the %d cells of a %dx%d maze on its own; generate it in tiles", mode, grid.cellCount(), rows, cols));
+        }
+        this.mode = mode;
+        Object event = MazeEvents.beginGeneration();
+        long allocated = GenerationMetrics.threadAllocatedBytes();
+        long start = System.nanoTime();
+        switch(mode) {
+            case BACKTRACK:
+                dfs();
+                break;
+            case PRIM:
+                prim();
+                break;
+            case COMBO:
+                combo();
+                break;
+            case GROWINGTREE:
+                growingTree(policy);
+                break;
+            case BTREE:
+                btree();
+                break;
+            case ALDOUSBRODER:
+                ab();
+                break;
+            case WILSON:
+                wilson();
+                break;
+            case ELLER:
+                eller();
+                break;
+            case SIDEWINDER:
+                sidewinder();
+                break;
+            case KRUSKAL:
+                kruskal(false);
+                break;
+            case FILTERKRUSKAL:
+                kruskal(true);
+                break;
+        }
+        long total = System.nanoTime() - start;
+        if(allocated >= 0) {
+            allocated = GenerationMetrics.threadAllocatedBytes() - allocated;
+        }
+        metrics = new GenerationMetrics(mode, rows, cols, iters, total - entryExitNanos, entryExitNanos,
+                peakOpen, frames, log.memoryBytes(), allocated);
+        MazeEvents.endGeneration(event, metrics);
+        return metrics;
+    }
+
+    /**
+     * Depth-first search maze generation algorithm (recursive backtracking).
+     * The stack holds cell ids in an int array and the unvisited neighbours of the current
+     * cell are collected in a bit mask, so a step allocates nothing; random numbers come
+     * from a SplittableRandom seeded from rng, which has no synchronization.
+     * Choices are made in the same order as the original list-based version, so the
+     * mazes follow the same distribution. The loop also carries on from the start cell if
+     * it still has unvisited neighbours once the stack is empty, which the original missed;
+     * that only happens when the start cell splits the maze in two, as in a one-row maze.
      */
     void dfs() {
         iters++;
-        currentRow = rng.nextInt(rows - 1);
-        currentCol = rng.nextInt(cols - 1);
-        stack.push(new Pair<>(currentRow, currentCol));
-        while(!stack.empty()) {
+        SplittableRandom random = new SplittableRandom(rng.nextLong());
+        int[] stack = new int[64];
+        int size = 0;
+        currentRow = random.nextInt(rows);
+        currentCol = random.nextInt(cols);
+        stack[size++] = grid.cell(currentRow, currentCol);
+        mark(currentRow, currentCol);
+        while(size > 0 || unvisitedNeighbours(currentRow, currentCol) != 0) {
             iters++;
-            matrix[currentRow][currentCol][4] = 1; // mark visited
-            List<Character> possible = new ArrayList<>();
-            if ((currentCol > 0) && (matrix[currentRow][currentCol - 1][4] == 0)) {
-                /* if it is not the first column and the column to the left has not
-                   already been visited:
-                   has possible left connection
-                 */
-                possible.add('L');
-            }
-            if ((currentCol < cols - 1) && (matrix[currentRow][currentCol + 1][4] == 0)) {
-                // has possible right connection
-                possible.add('R');
-            }
-            if ((currentRow > 0) && (matrix[currentRow - 1][currentCol][4] == 0)) {
-                // has possible up connection
-                possible.add('U');
-            }
-            if ((currentRow < rows - 1) && (matrix[currentRow + 1][currentCol][4] == 0)) {
-                // has possible down connection
-                possible.add('D');
-            }
-            if (!possible.isEmpty()) {
-                // if there are possible paths from this cell
-                int selection = rng.nextInt(possible.size());
-                if (possible.get(selection) == 'L') {
-                    // mark cell as having left connection
-                    matrix[currentRow][currentCol][0] = 1;
-                    // mark left connected cell as having right connection
-                    currentCol--;
-                    matrix[currentRow][currentCol][1] = 1;
-                }
-                if (possible.get(selection) == 'R') {
-                    // mark cell as having right connection
-                    matrix[currentRow][currentCol][1] = 1;
-                    // mark right connected cell as having left connection
-                    currentCol++;
-                    matrix[currentRow][currentCol][0] = 1;
+            grid.visit(currentRow, currentCol); // mark visited
+            int possible = unvisitedNeighbours(currentRow, currentCol);
+            if (possible != 0) {
+                // if there are possible paths from this cell, take a random one
+                int dir = randomDirection(possible, random);
+                carve(currentRow, currentCol, dir);
+                move(dir);
+                if(size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
                 }
-                if (possible.get(selection) == 'U') {
-                    // mark cell as having up connection
-                    matrix[currentRow][currentCol][2] = 1;
-                    // mark up connected cell as having down connection
-                    currentRow--;
-                    matrix[currentRow][currentCol][3] = 1;
-                }
-                if (possible.get(selection) == 'D') {
-                    // mark cell as having up connection
-                    matrix[currentRow][currentCol][3] = 1;
-                    // mark up connected cell as having down connection
-                    currentRow++;
-                    matrix[currentRow][currentCol][2] = 1;
-                }
-                stack.push(new Pair<>(currentRow, currentCol));
+                stack[size++] = grid.cell(currentRow, currentCol);
+                mark(currentRow, currentCol);
             } else {
-                Pair<Integer, Integer> stackTop = stack.pop();
-                currentRow = stackTop.getKey();
-                currentCol = stackTop.getValue();
+                int top = stack[--size];
+                currentRow = top / cols;
+                currentCol = top % cols;
+                unmark(currentRow, currentCol);
             }
-            if(animate)
-                frames.add(generateFrame(currentRow, currentCol));
+            if(record)
+                step();
         }
         setEntryExit();
     }
 
+    /**
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @return - A bit mask with bit dir set for every direction in which cell (r, c) has an unvisited neighbour.
+     */
+    private int unvisitedNeighbours(int r, int c) {
+        int possible = 0;
+        if ((c > 0) && !grid.isVisited(r, c - 1)) {
+            possible |= 1 << CellGrid.L;
+        }
+        if ((c < cols - 1) && !grid.isVisited(r, c + 1)) {
+            possible |= 1 << CellGrid.R;
+        }
+        if ((r > 0) && !grid.isVisited(r - 1, c)) {
+            possible |= 1 << CellGrid.U;
+        }
+        if ((r < rows - 1) && !grid.isVisited(r + 1, c)) {
+            possible |= 1 << CellGrid.D;
+        }
+        return possible;
+    }
+
+    /**
+     * Picks one of the directions in a mask with equal chance.
+     * @param possible - A non-empty bit mask of directions, as returned by unvisitedNeighbours.
+     * @param random - Source of randomness.
+     * @return - The chosen direction.
+     */
+    private static int randomDirection(int possible, SplittableRandom random) {
+        for(int selection = random.nextInt(Integer.bitCount(possible)); selection > 0; selection--) {
+            possible &= possible - 1;
+        }
+        return Integer.numberOfTrailingZeros(possible);
+    }
+
     /**
      * Maze generation algorithm based on Prim's minimum spanning tree algorithm (unweighted).
      */
     void prim() {
         iters++;
-        currentRow = rng.nextInt(rows - 1);
-        currentCol = rng.nextInt(cols - 1);
-        matrix[currentRow][currentCol][4] = 1;
-        if ((currentCol > 0) && (matrix[currentRow][currentCol - 1][4] == 0)) {
+        frontier = new Frontier(grid.size());
+        int[] neighbours = new int[4];
+        currentRow = rng.nextInt(rows);
+        currentCol = rng.nextInt(cols);
+        grid.visit(currentRow, currentCol);
+        addBorderCells(currentRow, currentCol);
+        while(!frontier.isEmpty()) {
+            iters++;
+            // select a random bordercell and remove it from the frontier
+            int cell = frontier.removeAt(rng.nextInt(frontier.size()));
+            currentRow = cell / cols;
+            currentCol = cell % cols;
+            unmark(currentRow, currentCol);
+            // collect the directions of the neighbours that are already in the maze
+            int count = 0;
+            if ((currentCol > 0) && grid.isVisited(currentRow, currentCol - 1)) {
+                neighbours[count++] = CellGrid.L;
+            }
+            if ((currentCol < cols - 1) && grid.isVisited(currentRow, currentCol + 1)) {
+                neighbours[count++] = CellGrid.R;
+            }
+            if ((currentRow > 0) && grid.isVisited(currentRow - 1, currentCol)) {
+                neighbours[count++] = CellGrid.U;
+            }
+            if ((currentRow < rows - 1) && grid.isVisited(currentRow + 1, currentCol)) {
+                neighbours[count++] = CellGrid.D;
+            }
+            // remove the wall connecting a random neighbour with the current cell
+            carve(currentRow, currentCol, neighbours[rng.nextInt(count)]);
+            // mark borderCell as being visited, and add its unvisited neighbours to the border cells
+            grid.visit(currentRow, currentCol);
+            addBorderCells(currentRow, currentCol);
+            // generate frame
+            if(record)
+                step();
+        }
+        setEntryExit();
+    }
+
+    /**
+     * Adds every unvisited neighbour of cell (r, c) to the frontier.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     */
+    private void addBorderCells(int r, int c) {
+        if ((c > 0) && !grid.isVisited(r, c - 1)) {
             // has possible left connection
-            borderCells.add(new Pair<>(currentRow, currentCol - 1));
+            if(frontier.add(grid.cell(r, c - 1)))
+                mark(r, c - 1);
         }
-        if ((currentCol < cols - 1) && (matrix[currentRow][currentCol + 1][4] == 0)) {
+        if ((c < cols - 1) && !grid.isVisited(r, c + 1)) {
             // has possible right connection
-            borderCells.add(new Pair<>(currentRow, currentCol + 1));
+            if(frontier.add(grid.cell(r, c + 1)))
+                mark(r, c + 1);
         }
-        if ((currentRow > 0) && (matrix[currentRow - 1][currentCol][4] == 0)) {
+        if ((r > 0) && !grid.isVisited(r - 1, c)) {
             // has possible up connection
-            borderCells.add(new Pair<>(currentRow - 1, currentCol));
+            if(frontier.add(grid.cell(r - 1, c)))
+                mark(r - 1, c);
         }
-        if ((currentRow < rows - 1) && (matrix[currentRow + 1][currentCol][4] == 0)) {
+        if ((r < rows - 1) && !grid.isVisited(r + 1, c)) {
             // has possible down connection
-            borderCells.add(new Pair<>(currentRow + 1, currentCol));
-        }
-        while(!borderCells.isEmpty()) {
-            iters++;
-            // select a random bordercell
-            int borderSelection = rng.nextInt(borderCells.size());
-            List<Pair<Pair<Integer, Integer>, Character>> neighbours = new ArrayList<>();
-            currentRow = borderCells.get(borderSelection).getKey();
-            currentCol = borderCells.get(borderSelection).getValue();
-            if (currentCol > 0) {
-                // has possible left connection
-                // if the cell to the left is already in the maze, add it to list of neighbours
-                if(matrix[currentRow][currentCol - 1][4] == 1) {
-                    neighbours.add(new Pair<>(new Pair<>(currentRow, currentCol - 1), 'R'));
-                }
-                // else, add it to the border cells
-                else {
-                    if(!borderCells.contains(new Pair<>(currentRow, currentCol - 1)))
-                        borderCells.add(new Pair<>(currentRow, currentCol - 1));
-                    //matrix[currentRow][currentCol - 1][4] = 1;
-                }
-            }
-            if (currentCol < cols - 1) {
-                // has possible right connection
-                // if the cell to the right is already in the maze, add it to the list of neighbours
-                if(matrix[currentRow][currentCol + 1][4] == 1) {
-                    neighbours.add(new Pair<>(new Pair<>(currentRow, currentCol + 1), 'L'));
-                }
-                // else, add it to the border cells
-                else {
-                    if(!borderCells.contains(new Pair<>(currentRow, currentCol + 1)))
-                        borderCells.add(new Pair<>(currentRow, currentCol + 1));
-                    //matrix[currentRow][currentCol + 1][4] = 1;
-                }
-            }
-            if (currentRow > 0)  {
-                // has possible up connection
-                // if the cell above is already in the maze, add it to the list of neighbours
-                if(matrix[currentRow - 1][currentCol][4] == 1) {
-                    neighbours.add(new Pair<>(new Pair<>(currentRow - 1, currentCol), 'D'));
-                }
-                // else, add it to the border cells
-                else {
-                    if(!borderCells.contains(new Pair<>(currentRow - 1, currentCol)))
-                        borderCells.add(new Pair<>(currentRow - 1, currentCol));
-                    //matrix[currentRow - 1][currentCol][4] = 1;
-                }
-            }
-            if (currentRow < rows - 1) {
-                // has possible down connection
-                // if the cell below is already in the maze, add it to the list of neighbours
-                if(matrix[currentRow + 1][currentCol][4] == 1) {
-                    neighbours.add(new Pair<>(new Pair<>(currentRow + 1, currentCol), 'U'));
-                }
-                // else, add it to the border cells
-                else {
-                    if(!borderCells.contains(new Pair<>(currentRow + 1, currentCol)))
-                        borderCells.add(new Pair<>(currentRow + 1, currentCol));
-                    //matrix[currentRow + 1][currentCol][4] = 1;
-                }
-            }
-
-            // choose a random neighbour
-            int neighbourSelection = rng.nextInt(neighbours.size());
-            // remove the wall connecting the selected neighbour with the current cell
-            Character direction = neighbours.get(neighbourSelection).getValue();
-            if(direction == 'L') {
-                // mark current borderCell as having right connection, and neighbour as having left connection
-                matrix[currentRow][currentCol][1] = 1;
-                matrix[currentRow][currentCol + 1][0]  = 1;
-            }
-            if(direction == 'R') {
-                // mark current borderCell as having left connection, and neighbour as having right connection
-                matrix[currentRow][currentCol][0] = 1;
-                matrix[currentRow][currentCol - 1][1]  = 1;
-            }
-            if(direction == 'U') {
-                // mark current borderCell as having down connection, and neighbour as having up connection
-                matrix[currentRow][currentCol][3] = 1;
-                matrix[currentRow + 1][currentCol][2]  = 1;
-            }
-            if(direction == 'D') {
-                // mark current borderCell as having up connection, and neighbour as having down connection
-                matrix[currentRow][currentCol][2] = 1;
-                matrix[currentRow - 1][currentCol][3]  = 1;
-            }
-            // mark borderCell as being visited
-            matrix[currentRow][currentCol][4] = 1;
-            // remove borderCell from borderCell list
-            borderCells.remove(borderSelection);
-            // generate frame
-            if(animate)
-                frames.add(generateFrame(currentRow, currentCol));
+            if(frontier.add(grid.cell(r + 1, c)))
+                mark(r + 1, c);
         }
-        setEntryExit();
     }
 
     /**
-     * Maze generation algorithm using aspects of both DFS and PRIM.
+     * Maze generation algorithm using aspects of both DFS and PRIM: a growing tree that
+     * grows from the newest or a random active cell with equal chance.
      */
     void combo() {
+        growingTree(GrowthPolicy.MIX);
+    }
+
+    /**
+     * Growing tree maze generation algorithm. Keeps a list of active cells, starting with
+     * one random cell; each step the policy picks an active cell, and a passage is carved
+     * from it to a random unvisited neighbour, which becomes active, or the cell is removed
+     * from the list once it has none. Every cell is added and removed once, and every step
+     * is O(1), so the whole run takes linear time whatever the policy.
+     * @param policy - How the active cell is picked; NEWEST is a recursive backtracker, RANDOM is close to Prim.
+     */
+    void growingTree(GrowthPolicy policy) {
         iters++;
-        // start by randomly adding one cell to the list of border cells
-        currentRow = rng.nextInt(rows - 1);
-        currentCol = rng.nextInt(cols - 1);
-        matrix[currentRow][currentCol][4] = 1; // mark visited
-        borderCells.add(new Pair<>(currentRow, currentCol));
-        // repeat until border cells list is empty
-        while(!borderCells.isEmpty()) {
+        SplittableRandom random = new SplittableRandom(rng.nextLong());
+        ActiveList active = new ActiveList(grid.size());
+        currentRow = random.nextInt(rows);
+        currentCol = random.nextInt(cols);
+        grid.visit(currentRow, currentCol);
+        active.add(grid.cell(currentRow, currentCol));
+        mark(currentRow, currentCol);
+        while(!active.isEmpty()) {
             iters++;
-            // choose a cell from the border cells, carve a passage to a random unvisited neighbour
-            // 50-50 chance that it will choose either the newest or a random member of the border list
-            int die = rng.nextInt(2);
-            int borderSelection;
-            if(die == 0) {
-                //break through via the newest member of the list
-                borderSelection = borderCells.size() - 1;
-            }
-            else {
-                //select a random member of the list
-                borderSelection = rng.nextInt(borderCells.size());
-            }
-            currentRow = borderCells.get(borderSelection).getKey();
-            currentCol = borderCells.get(borderSelection).getValue();
-            List<Character> possible = new ArrayList<>();
-            // get possible connections
-            if ((currentCol > 0) && (matrix[currentRow][currentCol - 1][4] == 0)) {
-                /* if it is not the first column and the column to the left has not
-                   already been visited:
-                   has possible left connection
-                 */
-                possible.add('L');
-            }
-            if ((currentCol < cols - 1) && (matrix[currentRow][currentCol + 1][4] == 0)) {
-                // has possible right connection
-                possible.add('R');
-            }
-            if ((currentRow > 0) && (matrix[currentRow - 1][currentCol][4] == 0)) {
-                // has possible up connection
-                possible.add('U');
-            }
-            if ((currentRow < rows - 1) && (matrix[currentRow + 1][currentCol][4] == 0)) {
-                // has possible down connection
-                possible.add('D');
-            }
-            if (!possible.isEmpty()) {
-                // if there are possible paths from this cell
-                // add the selected neighbour to the border cells.
-                int selection = rng.nextInt(possible.size());
-                if (possible.get(selection) == 'L') {
-                    // mark cell as having left connection
-                    matrix[currentRow][currentCol][0] = 1;
-                    // mark left connected cell as having right connection
-                    currentCol--;
-                    matrix[currentRow][currentCol][1] = 1;
-                }
-                if (possible.get(selection) == 'R') {
-                    // mark cell as having right connection
-                    matrix[currentRow][currentCol][1] = 1;
-                    // mark right connected cell as having left connection
-                    currentCol++;
-                    matrix[currentRow][currentCol][0] = 1;
-                }
-                if (possible.get(selection) == 'U') {
-                    // mark cell as having up connection
-                    matrix[currentRow][currentCol][2] = 1;
-                    // mark up connected cell as having down connection
-                    currentRow--;
-                    matrix[currentRow][currentCol][3] = 1;
-                }
-                if (possible.get(selection) == 'D') {
-                    // mark cell as having up connection
-                    matrix[currentRow][currentCol][3] = 1;
-                    // mark up connected cell as having down connection
-                    currentRow++;
-                    matrix[currentRow][currentCol][2] = 1;
-                }
-                borderCells.add(new Pair<>(currentRow, currentCol));
-                matrix[currentRow][currentCol][4] = 1;
+            int position = active.pick(policy, random);
+            int cell = active.get(position);
+            currentRow = cell / cols;
+            currentCol = cell % cols;
+            int possible = unvisitedNeighbours(currentRow, currentCol);
+            if(possible != 0) {
+                // carve to a random unvisited neighbour, which becomes active
+                int dir = randomDirection(possible, random);
+                carve(currentRow, currentCol, dir);
+                move(dir);
+                grid.visit(currentRow, currentCol);
+                active.add(grid.cell(currentRow, currentCol));
+                mark(currentRow, currentCol);
             } else {
-                // if there are no unvisited neighbours, remove cell from border
-                borderCells.remove(borderSelection);
-            }
-
-            if(animate) {
-                frames.add(generateFrame(currentRow, currentCol));
+                // no unvisited neighbours left, the cell is done
+                active.removeAt(position);
+                unmark(currentRow, currentCol);
             }
+            if(record)
+                step();
         }
         setEntryExit();
     }
 
     /**
-     * Maze generation algorithm using a binary tree.
+     * Maze generation algorithm using a binary tree: every cell is joined upwards or to the right.
      */
     void btree() {
-        List<Pair<Integer,Integer>> unvisitedCells = new LinkedList<>();
-        for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < cols; j++) {
-                unvisitedCells.add(new Pair<>(i, j));
-            }
+        rowByRow(RowGenerator.binaryTree(cols));
+    }
+
+    /**
+     * Maze generation based on the Sidewinder algorithm: runs of cells joined to the right,
+     * each joined upwards through one of its cells.
+     */
+    void sidewinder() {
+        rowByRow(RowGenerator.sidewinder(cols));
+    }
+
+    /**
+     * Runs a generator whose rows are independent. Without animation the rows are filled
+     * in parallel straight into the grid; when animating they are carved one cell at a
+     * time in reading order, a frame per cell.
+     * @param generator - The generator to run.
+     */
+    private void rowByRow(RowGenerator generator) {
+        long seed = rng.nextLong();
+        if(!record) {
+            generator.fill(seed, grid, progress);
+            iters += grid.cellCount();
+            carved += grid.cellCount() - 1;
+            setEntryExit();
+            return;
         }
-        while(!unvisitedCells.isEmpty()) {
-            iters++;
-            // randomly select a cell
-            int cellSelection = rng.nextInt(unvisitedCells.size());
-            currentRow = unvisitedCells.get(cellSelection).getKey();
-            currentCol = unvisitedCells.get(cellSelection).getValue();
-            // mark as visited
-            matrix[currentRow][currentCol][4] = 1;
-            unvisitedCells.remove(cellSelection);
-            List<Character> possible = new ArrayList<>();
-            if (currentCol < cols - 1) {
-                possible.add('R');
-            }
-            if (currentRow > 0) {
-                possible.add('U');
-            }
-            if(!possible.isEmpty()) {
-                int selection = rng.nextInt(possible.size());
-                if (possible.get(selection) == 'R') {
-                    // mark cell as having right connection
-                    matrix[currentRow][currentCol][1] = 1;
-                    // mark left connected cell as having left connection
-                    currentCol++;
-                    matrix[currentRow][currentCol][0] = 1;
-                }
-                if (possible.get(selection) == 'U') {
-                    // mark cell as having up connection
-                    matrix[currentRow][currentCol][2] = 1;
-                    // mark down connected cell as having down connection
-                    currentRow--;
-                    matrix[currentRow][currentCol][3] = 1;
+        byte[] above = new byte[cols]; // the passages down from the previous row are the upward ones of this row
+        try {
+            generator.generate(seed, rows, 0, rows, new RowSink() {
+                @Override
+                public void row(long r, byte[] cells) {
+                    currentRow = (int) r;
+                    for(currentCol = 0; currentCol < cols; currentCol++) {
+                        iters++;
+                        grid.visit(currentRow, currentCol);
+                        if((above[currentCol] & CellGrid.OPEN_DOWN) != 0) {
+                            carve(currentRow, currentCol, CellGrid.U);
+                        }
+                        if((cells[currentCol] & CellGrid.OPEN_RIGHT) != 0) {
+                            carve(currentRow, currentCol, CellGrid.R);
+                        }
+                        step();
+                    }
+                    currentCol = cols - 1;
+                    System.arraycopy(cells, 0, above, 0, cols);
                 }
+            });
+        } catch(IOException ex) {
+            // copying into the grid does no I/O
+            throw new UncheckedIOException(ex);
+        }
+        setEntryExit();
+    }
+
+    /**
+     * Maze generation based on Kruskal's algorithm, taking the edges in random order; see Kruskal.
+     * @param filter - Whether to use the parallel Filter-Kruskal variant.
+     */
+    void kruskal(boolean filter) {
+        Kruskal kruskal = new Kruskal(grid, new CarveSink() {
+            @Override
+            public void carve(int cell, int direction) {
+                iters++;
+                currentRow = cell / cols;
+                currentCol = cell % cols;
+                Maze.this.carve(currentRow, currentCol, direction);
+                if(record)
+                    Maze.this.step();
             }
-            if(animate) {
-                frames.add(generateFrame(currentRow, currentCol));
+
+            @Override
+            public void mark(int cell) {
             }
+
+            @Override
+            public void unmark(int cell) {
+            }
+
+            @Override
+            public void step(int cell) {
+            }
+        });
+        if(filter) {
+            kruskal.generateFiltered(rng.nextLong());
+        } else {
+            kruskal.generate(new SplittableRandom(rng.nextLong()));
         }
         setEntryExit();
     }
 
     /**
-     * Maze generation based on the Aldous-Broder algorithm (random walk)
+     * Maze generation based on the Aldous-Broder algorithm (random walk).
+     * The walk is far longer than the maze, so when animated only the steps that
+     * carve into a new cell end a frame; the walk over carved cells is not shown.
      */
     void ab() {
-        if(rows > 10 && cols > 10) {
-            System.out.println("INFO: An Aldous-Broder generation cannot be animated with more than 10 rows/cols due to its runtime flaws. " +
-                    "\nThis algorithm is for demonstration purposes only.");
-        }
+        int[] directions = new int[4];
         currentRow = rng.nextInt(rows);
         currentCol = rng.nextInt(cols);
-        matrix[currentRow][currentCol][4] = 1;
-        while(!allCellsVisited(matrix)) {
+        grid.visit(currentRow, currentCol);
+        // count the remaining cells instead of scanning the grid after every step
+        int unvisited = rows * cols - 1;
+        while(unvisited > 0) {
             iters++;
-            List<Character> possible = new ArrayList<>();
-            if (currentCol > 0) {
-                // has possible left connection
-                possible.add('L');
-            }
-            if (currentCol < cols - 1) {
-                // has possible right connection
-                possible.add('R');
-            }
-            if (currentRow > 0) {
-                // has possible up connection
-                possible.add('U');
-            }
-            if (currentRow < rows - 1) {
-                // has possible down connection
-                possible.add('D');
-            }
-            if (!possible.isEmpty()) {
-                // if there are possible paths from this cell, select one
-                int selection = rng.nextInt(possible.size());
-                if (possible.get(selection) == 'L') {
-                    // if the left cell is unvisited, connect
-                    if(matrix[currentRow][currentCol - 1][4] == 0) {
-                        // mark cell as having left connection
-                        matrix[currentRow][currentCol][0] = 1;
-                        // mark left connected cell as having right connection
-                        currentCol--;
-                        matrix[currentRow][currentCol][1] = 1;
-                    }
-                    else {
-                        currentCol--;
-                    }
-                }
-                if (possible.get(selection) == 'R') {
-                    // if the right cell is unvisited, connect
-                    if(matrix[currentRow][currentCol + 1][4] == 0) {
-                        // mark cell as having right connection
-                        matrix[currentRow][currentCol][1] = 1;
-                        // mark right connected cell as having left connection
-                        currentCol++;
-                        matrix[currentRow][currentCol][0] = 1;
-                    }
-                    else {
-                        currentCol++;
-                    }
-                }
-                if (possible.get(selection) == 'U') {
-                    // if the above cell is unvisited, connect
-                    if(matrix[currentRow - 1][currentCol][4] == 0) {
-                        // mark cell as having up connection
-                        matrix[currentRow][currentCol][2] = 1;
-                        // mark up connected cell as having down connection
-                        currentRow--;
-                        matrix[currentRow][currentCol][3] = 1;
-                    }
-                    else {
-                        currentRow--;
-                    }
-                }
-                if (possible.get(selection) == 'D') {
-                    // if the below cell is unvisited, connect
-                    if(matrix[currentRow + 1][currentCol][4] == 0) {
-                        // mark cell as having down connection
-                        matrix[currentRow][currentCol][3] = 1;
-                        // mark down connected cell as having up connection
-                        currentRow++;
-                        matrix[currentRow][currentCol][2] = 1;
-                    }
-                    else {
-                        currentRow++;
-                    }
+            int count = 0;
+            if (currentCol > 0) directions[count++] = CellGrid.L;
+            if (currentCol < cols - 1) directions[count++] = CellGrid.R;
+            if (currentRow > 0) directions[count++] = CellGrid.U;
+            if (currentRow < rows - 1) directions[count++] = CellGrid.D;
+            int direction = directions[rng.nextInt(count)];
+            int from = grid.cell(currentRow, currentCol);
+            move(direction);
+            if(!grid.isVisited(currentRow, currentCol)) {
+                // remove the wall between the previous cell and this newly reached one
+                grid.visit(currentRow, currentCol);
+                carve(from / cols, from % cols, direction);
+                unvisited--;
+                if(record) {
+                    step();
                 }
-                matrix[currentRow][currentCol][4] = 1;
-            }
-            // restrict animation because this algorithm is terrible
-            if(animate && rows < 10 && cols < 10) {
-                frames.add(generateFrame(currentRow, currentCol));
             }
         }
         setEntryExit();
     }
 
     /**
-     * Returns true if all cells in the 3d array 'maze' have been visited,
-     * false otherwise.
-     * @param maze - the maze array to evaluate
-     * @return boolean
+     * Maze generation based on Wilson's algorithm (loop-erased random walk).
+     * Produces the same uniform distribution as Aldous-Broder, but only walks
+     * until it hits the part of the maze that has already been carved.
      */
-    private boolean allCellsVisited(int maze[][][]) {
-        for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < cols; j++) {
-                if(maze[i][j][4] == 0) {
-                    return false;
+    void wilson() {
+        iters++;
+        // last direction taken out of each cell during the current walk; overwriting it erases loops
+        byte[] walk = new byte[grid.size()];
+        int[] directions = new int[4];
+        currentRow = rng.nextInt(rows);
+        currentCol = rng.nextInt(cols);
+        grid.visit(currentRow, currentCol);
+        for(int start = 0; start < grid.size(); start++) {
+            int startRow = start / cols;
+            int startCol = start % cols;
+            if(grid.isVisited(startRow, startCol)) {
+                continue;
+            }
+            // random walk from the start cell until it reaches the maze
+            currentRow = startRow;
+            currentCol = startCol;
+            while(!grid.isVisited(currentRow, currentCol)) {
+                iters++;
+                int count = 0;
+                if (currentCol > 0) directions[count++] = CellGrid.L;
+                if (currentCol < cols - 1) directions[count++] = CellGrid.R;
+                if (currentRow > 0) directions[count++] = CellGrid.U;
+                if (currentRow < rows - 1) directions[count++] = CellGrid.D;
+                int direction = directions[rng.nextInt(count)];
+                walk[grid.cell(currentRow, currentCol)] = (byte) direction;
+                move(direction);
+            }
+            // retrace the loop-erased walk, carving it into the maze
+            currentRow = startRow;
+            currentCol = startCol;
+            while(!grid.isVisited(currentRow, currentCol)) {
+                int direction = walk[grid.cell(currentRow, currentCol)];
+                grid.visit(currentRow, currentCol);
+                carve(currentRow, currentCol, direction);
+                if(record) {
+                    step();
                 }
+                move(direction);
             }
         }
-        return true;
+        setEntryExit();
     }
 
     /**
-     * Set the entrance and exit points of the maze.
+     * Maze generation based on Eller's algorithm, one row at a time.
+     * Eller itself only needs the current row; here every row is copied into the grid
+     * so the maze can be shown, solved and exported like the others. For mazes too
+     * tall to hold in memory, use Eller directly with a streaming RowSink.
      */
-    private void setEntryExit() {
-        // maze entry
-        matrix[0][0][2] = 1;
-        // maze exit
-        matrix[rows - 1][cols - 1][3] = 1;
-
-        frames.add(generateFrame(-1, -1));
-    }
-
-    /**
-     * Returns a single image showing the current state of the maze.
-     * The current cell will be highlighted in red.
-     * @param r - The row of the current cell being explored.
-     * @param c - The column of the current cell being explored.
-     * @return Image
-     */
-    private Image generateFrame(int r, int c) {
-        int cellSize = Main.cellSize;
-        int scaleFactor = Main.scaleFactor;
-        WritableImage canvas = new WritableImage(cols*cellSize + (cellSize/2), rows*cellSize + (cellSize/2));
-        PixelWriter writer = canvas.getPixelWriter();
-        Pair<Integer, Integer> p;
-        for(int i = 0; i < canvas.getWidth(); i++) {
-            for(int j = 0; j < canvas.getHeight(); j++) {
-                writer.setColor(i, j, Color.rgb(0,0,255));
-            }
-        }
-        for(int row = 0; row < rows; row++) {
-            for(int col = 0; col < cols; col++) {
-                int[] cellData = matrix[row][col];
-                p = new Pair<>(row, col);
-                if (row == r && col == c) {
-                    for (int k = 1; k < cellSize - 1; k++) {
-                        // colour all except the outer 10 pixels of this cell RED
-                        for (int m = 1; m < cellSize - 1; m++) {
-                            writer.setColor(cellSize * col + k + 1, cellSize * row + m + 1, Color.RED);
-                        }
-
-                        if (cellData[0] == 1) {
-                            // if left connection, set leftmost pixels to RED
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + 1, cellSize * row + m + 1, Color.RED);
-                            }
-                        }
-                        if (cellData[1] == 1) {
-                            // if right connection, set rightmost pixels to RED
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + (cellSize - 1) + 1, cellSize * row + m + 1, Color.RED);
-                            }
+    void eller() {
+        Eller eller = new Eller(cols, rng);
+        try {
+            eller.generate(rows, new RowSink() {
+                @Override
+                public void row(long r, byte[] cells) {
+                    currentRow = (int) r;
+                    for(currentCol = 0; currentCol < cols; currentCol++) {
+                        iters++;
+                        grid.visit(currentRow, currentCol);
+                        if((cells[currentCol] & CellGrid.OPEN_RIGHT) != 0) {
+                            carve(currentRow, currentCol, CellGrid.R);
                         }
-                        if (cellData[2] == 1) {
-                            // if up connection, set topmost pixels to RED
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + 1, Color.RED);
-                            }
+                        if((cells[currentCol] & CellGrid.OPEN_DOWN) != 0) {
+                            carve(currentRow, currentCol, CellGrid.D);
                         }
-                        if (cellData[3] == 1) {
-                            // if down connection, set bottommost pixels to RED
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + (cellSize - 1) + 1, Color.RED);
-                            }
-                        }
-
                     }
-                } else if (borderCells.contains(p) || stack.contains(p)) {
-                    for (int k = 1; k < cellSize - 1; k++) {
-                        // colour all except the outer 10 pixels of this cell LIGHT BLUE
-                        for (int m = 1; m < cellSize - 1; m++) {
-                            writer.setColor(cellSize * col + k + 1, cellSize * row + m + 1, Color.CYAN);
-                        }
-
-                        if (cellData[0] == 1) {
-                            // if left connection, set leftmost pixels to LIGHT BLUE
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + 1, cellSize * row + m + 1, Color.CYAN);
-                            }
-                        }
-                        if (cellData[1] == 1) {
-                            // if right connection, set rightmost pixels to LIGHT BLUE
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + (cellSize - 1) + 1, cellSize * row + m + 1, Color.CYAN);
-                            }
-                        }
-                        if (cellData[2] == 1) {
-                            // if up connection, set topmost pixels to LIGHT BLUE
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + 1, Color.CYAN);
-                            }
-                        }
-                        if (cellData[3] == 1) {
-                            // if down connection, set bottommost pixels to LIGHT BLUE
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + (cellSize - 1) + 1, Color.CYAN);
-                            }
-                        }
-
+                    currentCol = cols - 1;
+                    if(record) {
+                        step();
                     }
-                } else {
-                    for (int k = 1; k < cellSize - 1; k++) {
-                        // colour all except the outer 10 pixels of this cell WHITE
-                        for (int m = 1; m < cellSize - 1; m++) {
-                            writer.setColor(cellSize * col + k + 1, cellSize * row + m + 1, Color.WHITE);
-                        }
+                }
+            });
+        } catch(IOException ex) {
+            // copying into the grid does no I/O
+            throw new UncheckedIOException(ex);
+        }
+        setEntryExit();
+    }
 
-                        if (cellData[0] == 1) {
-                            // if left connection, set leftmost pixels to white
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + 1, cellSize * row + m + 1, Color.WHITE);
-                            }
-                        }
-                        if (cellData[1] == 1) {
-                            // if right connection, set rightmost pixels to white
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + (cellSize - 1) + 1, cellSize * row + m + 1, Color.WHITE);
-                            }
-                        }
-                        if (cellData[2] == 1) {
-                            // if up connection, set topmost pixels to white
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + 1, Color.WHITE);
-                            }
-                        }
-                        if (cellData[3] == 1) {
-                            // if down connection, set bottommost pixels to white
-                            for (int m = 1; m < cellSize - 1; m++) {
-                                writer.setColor(cellSize * col + m + 1, cellSize * row + (cellSize - 1) + 1, Color.WHITE);
-                            }
-                        }
+    /**
+     * Removes the wall between cell (r, c) and its neighbour in direction dir,
+     * recording the change if the generation is being animated and reporting progress.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     * @param dir - One of CellGrid.L, R, U, D.
+     */
+    private void carve(int r, int c, int dir) {
+        grid.carve(r, c, dir);
+        if(record)
+            events.carve(grid.cell(r, c), dir);
+        if(progress != null && ++carved % PROGRESS_INTERVAL == 0)
+            progress.update(carved, grid.cellCount() - 1);
+    }
 
-                    }
-                }
-            }
-            // entrance & exit stuff
+    /**
+     * Records that cell (r, c) joined the frontier/stack, so it is highlighted in the animation.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     */
+    private void mark(int r, int c) {
+        if(++open > peakOpen)
+            peakOpen = open;
+        if(record)
+            events.mark(grid.cell(r, c));
+    }
 
-            if(r == -1 && c == -1) {
-                writer.setColor(2, 0, Color.WHITE);
-                writer.setColor(3, 0, Color.WHITE);
-                writer.setColor((int)canvas.getWidth() - 3, (int)canvas.getHeight() - 1, Color.WHITE);
-                writer.setColor((int)canvas.getWidth() - 4, (int)canvas.getHeight() - 1, Color.WHITE);
-            }
+    /**
+     * Records that cell (r, c) left the frontier/stack.
+     * @param r - Row of the cell.
+     * @param c - Column of the cell.
+     */
+    private void unmark(int r, int c) {
+        open--;
+        if(record)
+            events.unmark(grid.cell(r, c));
+    }
+
+    /**
+     * Ends the current animation frame, with the current cell highlighted.
+     */
+    private void step() {
+        events.step(grid.cell(currentRow, currentCol));
+        frames++;
+    }
 
+    /**
+     * Moves the current cell one step in the given direction.
+     * @param direction - One of CellGrid.L, R, U, D.
+     */
+    private void move(int direction) {
+        switch(direction) {
+            case CellGrid.L:
+                currentCol--;
+                break;
+            case CellGrid.R:
+                currentCol++;
+                break;
+            case CellGrid.U:
+                currentRow--;
+                break;
+            case CellGrid.D:
+                currentRow++;
+                break;
         }
+    }
 
-        return resample(canvas, scaleFactor);
+    /**
+     * Set the entrance and exit points of the maze.
+     */
+    private void setEntryExit() {
+        long start = System.nanoTime();
+        // maze entry and exit
+        grid.setEntryExit();
+        events.step(-1);
+        frames++;
+        entryExitNanos += System.nanoTime() - start;
     }
 
     /**
-     * Takes an image and returns the same image resized based on a given scalar S.
-     * @param input - input image.
-     * @param S - scalar.
-     * @return - Newly scaled image.
+     * @return - The grid holding the cell data of this maze.
      */
-    private Image resample(Image input, int S) {
-        final int W = (int) input.getWidth();
-        final int H = (int) input.getHeight();
+    CellGrid getGrid() {
+        return grid;
+    }
 
-        WritableImage output = new WritableImage(
-                W * S,
-                H * S
-        );
+    /**
+     * @return - Measurements of the last generate call, or null if it has not been called.
+     */
+    GenerationMetrics getMetrics() {
+        return metrics;
+    }
 
-        PixelReader reader = input.getPixelReader();
-        PixelWriter writer = output.getPixelWriter();
+    /**
+     * @return - The events recorded during generation.
+     */
+    CarveLog getLog() {
+        return log;
+    }
 
-        for (int y = 0; y < H; y++) {
-            for (int x = 0; x < W; x++) {
-                final int argb = reader.getArgb(x, y);
-                for (int dy = 0; dy < S; dy++) {
-                    for (int dx = 0; dx < S; dx++) {
-                        writer.setArgb(x * S + dx, y * S + dy, argb);
-                    }
-                }
-            }
+    /**
+     * Frames are not stored; they are rasterized from the carve log when the
+     * animation displays them, so headless generation never touches the JavaFX image classes.
+     * The animation is built on the first call, which replays the whole log once to take
+     * its keyframes, and reused afterwards.
+     * @return - An animation of the maze generation, or null if its carve log was dropped.
+     */
+    AnimatedImage getAnimation() {
+        if(animation == null && !log.isDropped()) {
+            animation = new AnimatedImage(log, grid);
         }
-
-        return output;
+        return animation;
     }
 
     /**
-     * @return - The list of images containing all frames of the maze generation.
+     * The measurements are taken on the first call, in one pass over the finished maze,
+     * and reused afterwards.
+     * @return - Dead ends, junctions, corridors and path lengths of the maze; see MazeAnalytics.
      */
-    List<Image> getFrames() {
-        return frames;
+    MazeAnalytics getAnalytics() {
+        if(analytics == null) {
+            analytics = MazeAnalytics.analyze(grid);
+        }
+        return analytics;
     }
 }
 
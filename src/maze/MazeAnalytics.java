@@ -0,0 +1,247 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Structural measurements of a finished maze, used to grade its difficulty:
+ *   dead ends - cells with one passage;
+ *   junctions - cells with three or four passages;
+ *   corridors - the chains of cells with exactly two passages between two cells that have
+ *               some other number, by length in cells (zero when two such cells are adjacent);
+ *   solution length - cells on the path from the entrance to the exit, as in Solver;
+ *   diameter - cells on the longest path in the maze;
+ *   river factor - the mean number of cells from a dead end up to the junction its corridor
+ *                  leads to. Mazes with few but long dead ends "flow" like a river and score
+ *                  high (the recursive backtracker); many short dead ends score low (Prim).
+ *
+ * Everything but the two path lengths is found in one sweep over the cells, split into
+ * bands of rows that run in parallel on the current fork/join pool, or the common pool if
+ * not called from one. Every corridor is walked from both of its ends, but only counted
+ * from the end with the lower cell id. The path lengths take two breadth-first searches:
+ * one from the entrance, which reaches the exit and the cell farthest from the entrance,
+ * and one from that cell, whose farthest cell lies at the other end of a longest path.
+ * These need 5 bytes per cell.
+ */
+class MazeAnalytics {
+    private static final int BAND_CELLS = 1 << 16; // cells per task in the sweep
+    private static final int BUCKETS = 33;         // corridor lengths 0, 1, 2-3, 4-7, ... 2^31-
+
+    private final long cells;
+    private final Sweep sweep;
+    private final int solutionLength;
+    private final int diameter;
+    private final long nanos;
+
+    private MazeAnalytics(long cells, Sweep sweep, int solutionLength, int diameter, long nanos) {
+        this.cells = cells;
+        this.sweep = sweep;
+        this.solutionLength = solutionLength;
+        this.diameter = diameter;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Measures a maze.
+     * @param grid - The maze; every cell must be reachable for the diameter to be meaningful.
+     * @return - The measurements.
+     */
+    static MazeAnalytics analyze(CellGrid grid) {
+        long start = System.nanoTime();
+        Sweep sweep = new Sweep(grid, 0, grid.rows());
+        if(ForkJoinTask.getPool() != null) {
+            sweep.invoke();
+        } else {
+            ForkJoinPool.commonPool().invoke(sweep);
+        }
+        int size = grid.size();
+        byte[] from = new byte[size];
+        int[] queue = new int[size];
+        long first = farthest(grid, 0, size - 1, from, queue);
+        int solution = (int) (first >>> 32);
+        int end = (int) first;
+        Arrays.fill(from, (byte) 0);
+        long second = farthest(grid, end, -1, from, queue);
+        return new MazeAnalytics(size, sweep, solution, (int) (second >>> 32) + 1, System.nanoTime() - start);
+    }
+
+    /**
+     * Breadth-first search from a cell, one level of the queue at a time so no distances
+     * are stored. The direction every cell was entered from is kept in from (0 = not reached).
+     * @return - The cells on the path to goal, or 0 if it was not reached, in the upper half,
+     * and the last cell reached, which is the farthest from start, in the lower half; but if
+     * goal is -1, the number of steps to that cell in the upper half.
+     */
+    private static long farthest(CellGrid grid, int start, int goal, byte[] from, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        int depth = 0;
+        int toGoal = start == goal ? 1 : 0;
+        from[start] = 5;
+        queue[tail++] = start;
+        while(true) {
+            int level = tail;
+            for(; head < level; head++) {
+                int cell = queue[head];
+                for(int exits = grid.exits(cell); exits != 0; exits &= exits - 1) {
+                    int dir = Integer.numberOfTrailingZeros(exits);
+                    int next = grid.neighbour(cell, dir);
+                    if(from[next] == 0) {
+                        from[next] = (byte) ((dir ^ 1) + 1);
+                        queue[tail++] = next;
+                        if(next == goal) {
+                            toGoal = depth + 2;
+                        }
+                    }
+                }
+            }
+            if(tail == level) {
+                break;
+            }
+            depth++;
+        }
+        return ((long) (goal == -1 ? depth : toGoal) << 32) | queue[tail - 1];
+    }
+
+    long getDeadEnds() {
+        return sweep.deadEnds;
+    }
+
+    long getJunctions() {
+        return sweep.junctions[0] + sweep.junctions[1];
+    }
+
+    long getCorridors() {
+        long corridors = 0;
+        for(long count : sweep.corridors) {
+            corridors += count;
+        }
+        return corridors;
+    }
+
+    int getSolutionLength() {
+        return solutionLength;
+    }
+
+    int getDiameter() {
+        return diameter;
+    }
+
+    double getRiverFactor() {
+        return sweep.deadEnds == 0 ? 0 : (double) sweep.riverCells / sweep.deadEnds;
+    }
+
+    /**
+     * @return - The time taken by analyze, in nanoseconds.
+     */
+    long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder histogram = new StringBuilder();
+        for(int b = 0; b < BUCKETS; b++) {
+            if(sweep.corridors[b] > 0) {
+                long low = b == 0 ? 0 : 1L << (b - 1);
+                long high = b == 0 ? 0 : (1L << b) - 1;
+                histogram.append(low == high ? String.format(" %d:%d", low, sweep.corridors[b])
+                        : String.format(" %d-%d:%d", low, high, sweep.corridors[b]));
+            }
+        }
+        long corridors = getCorridors();
+        return String.format("Dead ends %d (%.2f%% of cells), junctions %d (%d three-way, %d four-way)%n" +
+                        "Corridors %d, mean length %.2f, by length%s%n" +
+                        "Solution length %s, diameter %d cells, river factor %.2f; analysed in %.3f ms",
+                sweep.deadEnds, 100.0 * sweep.deadEnds / cells, getJunctions(), sweep.junctions[0], sweep.junctions[1],
+                corridors, corridors == 0 ? 0 : (double) sweep.corridorCells / corridors, histogram,
+                solutionLength == 0 ? "none" : solutionLength + " cells", diameter, getRiverFactor(), nanos / 1000000.0);
+    }
+
+    /**
+     * Counts the cells of a band of rows by their number of passages and walks the corridors
+     * leaving its cells that do not have two, halving the band until it is small enough and
+     * then adding up the counts of both halves. Only reads the grid, so bands can run concurrently.
+     */
+    @SuppressWarnings("serial")
+    private static class Sweep extends RecursiveAction {
+        private final CellGrid grid;
+        private final int from;
+        private final int to;
+        private long deadEnds;
+        private final long[] junctions = new long[2]; // three-way, four-way
+        private final long[] corridors = new long[BUCKETS];
+        private long corridorCells;
+        private long riverCells;
+
+        Sweep(CellGrid grid, int from, int to) {
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if((long) (to - from) * grid.cols() > BAND_CELLS && to - from > 1) {
+                int middle = (from + to) >>> 1;
+                Sweep top = new Sweep(grid, from, middle);
+                Sweep bottom = new Sweep(grid, middle, to);
+                invokeAll(top, bottom);
+                add(top);
+                add(bottom);
+                return;
+            }
+            int cols = grid.cols();
+            for(int cell = from * cols; cell < to * cols; cell++) {
+                int exits = grid.exits(cell);
+                int degree = Integer.bitCount(exits);
+                if(degree == 2) {
+                    continue;
+                }
+                if(degree == 1) {
+                    deadEnds++;
+                } else if(degree > 2) {
+                    junctions[degree - 3]++;
+                }
+                for(; exits != 0; exits &= exits - 1) {
+                    walk(cell, Integer.numberOfTrailingZeros(exits), degree == 1);
+                }
+            }
+        }
+
+        /**
+         * Follows the corridor leaving cell in direction dir to its far end.
+         */
+        private void walk(int cell, int dir, boolean deadEnd) {
+            int length = 0;
+            int next = grid.neighbour(cell, dir);
+            int exits = grid.exits(next);
+            while(Integer.bitCount(exits) == 2) {
+                length++;
+                dir = Integer.numberOfTrailingZeros(exits & ~(1 << (dir ^ 1)));
+                next = grid.neighbour(next, dir);
+                exits = grid.exits(next);
+            }
+            if(cell < next) {
+                corridors[32 - Integer.numberOfLeadingZeros(length)]++;
+                corridorCells += length;
+            }
+            if(deadEnd) {
+                riverCells += length + 1;
+            }
+        }
+
+        private void add(Sweep band) {
+            deadEnds += band.deadEnds;
+            junctions[0] += band.junctions[0];
+            junctions[1] += band.junctions[1];
+            for(int b = 0; b < BUCKETS; b++) {
+                corridors[b] += band.corridors[b];
+            }
+            corridorCells += band.corridorCells;
+            riverCells += band.riverCells;
+        }
+    }
+}
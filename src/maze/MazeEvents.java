@@ -0,0 +1,83 @@
+package maze;
+
+/**
+ * Custom JDK Flight Recorder events for maze generation and frame rendering.
+ * Record them with e.g. java -XX:StartFlightRecording=filename=maze.jfr ... --batch 1000
+ * and inspect them with "jfr print --events maze.Generation maze.jfr" or JDK Mission Control.
+ *
+ * The events extend jdk.jfr.Event, which only exists from Java 8u262 on and which
+ * javac --release 8 does not know, so they are declared in JfrRecorder in the separate
+ * source folder src-jfr. The build scripts compile it after src only if the compiler can,
+ * and it is loaded here by name. Without it, or on a JVM without the jdk.jfr module, every
+ * method is a no-op, so referring to this class is always safe. When no recording has an
+ * event enabled, its begin method returns null without creating it and its end method
+ * does nothing, so the rendering of a frame does no extra work beyond that check.
+ */
+final class MazeEvents {
+    private static final Recorder RECORDER = load();
+    static final boolean AVAILABLE = RECORDER != null;
+
+    /**
+     * Creates and commits the events; implemented by JfrRecorder.
+     */
+    interface Recorder {
+        Object beginGeneration();
+
+        void endGeneration(Object event, GenerationMetrics metrics);
+
+        Object beginFrame();
+
+        void endFrame(Object event, int index, int replayed);
+    }
+
+    private MazeEvents() {
+    }
+
+    private static Recorder load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("maze.JfrRecorder").getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts timing a generation event.
+     * @return - The event to pass to endGeneration, or null if JFR is unavailable or the event is not being recorded.
+     */
+    static Object beginGeneration() {
+        return RECORDER == null ? null : RECORDER.beginGeneration();
+    }
+
+    /**
+     * Ends a generation event and commits it, if it is being recorded.
+     * @param event - The value returned by beginGeneration.
+     * @param metrics - The measurements of the run.
+     */
+    static void endGeneration(Object event, GenerationMetrics metrics) {
+        if(event != null) {
+            RECORDER.endGeneration(event, metrics);
+        }
+    }
+
+    /**
+     * Starts timing a frame rendering event.
+     * @return - The event to pass to endFrame, or null if JFR is unavailable or the event is not being recorded.
+     */
+    static Object beginFrame() {
+        return RECORDER == null ? null : RECORDER.beginFrame();
+    }
+
+    /**
+     * Ends a frame rendering event and commits it, if it is being recorded.
+     * @param event - The value returned by beginFrame.
+     * @param index - Index of the rendered frame.
+     * @param replayed - Number of carve log events replayed to reach the frame.
+     */
+    static void endFrame(Object event, int index, int replayed) {
+        if(event != null) {
+            RECORDER.endFrame(event, index, replayed);
+        }
+    }
+}
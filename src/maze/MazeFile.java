@@ -0,0 +1,178 @@
+package maze;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Saves finished mazes in a compact binary format, and opens them again by mapping the
+ * file into memory, so even a very large maze is ready to show or solve as soon as its
+ * header is read; the cells are paged in from the file as they are used. The file is
+ * mapped in segments, as CellStore.OffHeap is, so a maze of any size can be opened.
+ *
+ * Layout, big-endian:
+ *   offset 0   4 bytes  magic "MAZE"
+ *   offset 4   short    format version, VERSION
+ *   offset 6   short    flags: bit 0 entrance open, bit 1 exit open
+ *   offset 8   int      rows
+ *   offset 12  int      columns
+ *   offset 16  int      index of the MazeMode that generated the maze, or -1 if unknown
+ *   offset 20  int      reserved, 0
+ *   offset 24  long     seed of the generator, or 0 if unknown
+ *   offset 32  cells in row-major order, two bits each and four to a byte from the low bits
+ *              up: bit 0 for the passage right, bit 1 for the passage down
+ * The maze takes a quarter of a byte per cell, against a byte per cell in memory and
+ * around 8 bytes per cell for a PNG at the default scale factor.
+ */
+class MazeFile {
+    static final String EXTENSION = ".maze";
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    private static final byte[] MAGIC = "MAZE".getBytes(StandardCharsets.US_ASCII);
+    private static final int ENTRY_OPEN = 1;
+    private static final int EXIT_OPEN = 1 << 1;
+
+    private final CellGrid grid;
+    private final MazeMode mode;
+    private final long seed;
+
+    private MazeFile(CellGrid grid, MazeMode mode, long seed) {
+        this.grid = grid;
+        this.mode = mode;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes a maze to a file.
+     * @param grid - The finished maze.
+     * @param mode - The algorithm that generated it, or null if unknown.
+     * @param seed - The seed it was generated from, or 0 if unknown.
+     * @param file - Destination file.
+     * @throws IOException - if the file cannot be written.
+     */
+    static void write(CellGrid grid, MazeMode mode, long seed, File file) throws IOException {
+        int rows = grid.rows();
+        int cols = grid.cols();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort((grid.isOpen(0, 0, CellGrid.U) ? ENTRY_OPEN : 0)
+                    | (grid.isOpen(rows - 1, cols - 1, CellGrid.D) ? EXIT_OPEN : 0));
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(mode == null ? -1 : mode.getIndex());
+            out.writeInt(0);
+            out.writeLong(seed);
+            byte[] row = new byte[cols];
+            int packed = 0;
+            int count = 0;
+            for(int r = 0; r < rows; r++) {
+                grid.copyRow(r, row);
+                for(int c = 0; c < cols; c++) {
+                    packed |= (row[c] & (CellGrid.OPEN_RIGHT | CellGrid.OPEN_DOWN)) << (count << 1);
+                    if(++count == 4) {
+                        out.write(packed);
+                        packed = 0;
+                        count = 0;
+                    }
+                }
+            }
+            if(count > 0) {
+                out.write(packed);
+            }
+        }
+    }
+
+    /**
+     * Opens a maze written by write. The file is mapped read-only and not copied; it can
+     * be changed or deleted once the returned grid is no longer used.
+     * @param file - The file to open.
+     * @return - The maze, with a read-only grid.
+     * @throws IOException - if the file cannot be read or is not a valid maze file.
+     */
+    static MazeFile open(File file) throws IOException {
+        long length;
+        ByteBuffer[] segments;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            if(length < HEADER_BYTES) {
+                throw new IOException(file + " is not a maze file");
+            }
+            segments = new ByteBuffer[(int) ((length + CellStore.SEGMENT_MASK) >>> CellStore.SEGMENT_BITS)];
+            for(int s = 0; s < segments.length; s++) {
+                long from = (long) s << CellStore.SEGMENT_BITS;
+                // the mappings stay valid after closing
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(1L << CellStore.SEGMENT_BITS, length - from));
+            }
+        }
+        ByteBuffer buffer = segments[0]; // holds the header, big-endian like every new buffer
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if(!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(file + " is not a maze file");
+        }
+        int version = buffer.getShort(4);
+        if(version != VERSION) {
+            throw new IOException(String.format("%s has format version %d; only version %d is supported", file, version, VERSION));
+        }
+        int flags = buffer.getShort(6);
+        int rows = buffer.getInt(8);
+        int cols = buffer.getInt(12);
+        int modeIndex = buffer.getInt(16);
+        long seed = buffer.getLong(24);
+        if(rows < 1 || cols < 1 || length - HEADER_BYTES < CellStore.Packed.bytes((long) rows * cols)) {
+            throw new IOException(String.format("%s is truncated or has an invalid size %dx%d", file, rows, cols));
+        }
+        MazeMode mode = null;
+        if(modeIndex != -1) {
+            try {
+                mode = MazeMode.byIndex(modeIndex);
+            } catch(IllegalArgumentException ex) {
+                // a mode added after this version; the maze itself is still readable
+            }
+        }
+        CellStore cells = new CellStore.Packed(segments, HEADER_BYTES, (long) rows * cols);
+        // a passage out through the right or bottom edge would lead to a cell that does not
+        // exist; write never stores one, so the file is damaged. Only the edges are read
+        for(int r = 0; r < rows; r++) {
+            if((cells.get((long) r * cols + cols - 1) & CellGrid.OPEN_RIGHT) != 0) {
+                throw new IOException(String.format("%s is damaged: row %d has a passage out of the right edge", file, r));
+            }
+        }
+        for(int c = 0; c < cols; c++) {
+            if((cells.get((long) (rows - 1) * cols + c) & CellGrid.OPEN_DOWN) != 0) {
+                throw new IOException(String.format("%s is damaged: column %d has a passage out of the bottom edge", file, c));
+            }
+        }
+        CellGrid grid = new CellGrid(rows, cols, cells, (flags & ENTRY_OPEN) != 0, (flags & EXIT_OPEN) != 0);
+        return new MazeFile(grid, mode, seed);
+    }
+
+    /**
+     * @return - The maze, read straight from the mapped file.
+     */
+    CellGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return - The algorithm that generated the maze, or null if unknown.
+     */
+    MazeMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return - The seed the maze was generated from, or 0 if unknown.
+     */
+    long getSeed() {
+        return seed;
+    }
+}
@@ -5,7 +5,13 @@ public enum MazeMode {
     PRIM(1),
     COMBO(2),
     BTREE(3),
-    ALDOUSBRODER(4);
+    ALDOUSBRODER(4),
+    WILSON(5),
+    ELLER(6),
+    GROWINGTREE(7),
+    SIDEWINDER(8),
+    KRUSKAL(9),
+    FILTERKRUSKAL(10);
 
     private int index;
 
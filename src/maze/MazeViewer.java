@@ -0,0 +1,393 @@
+package maze;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shows a finished maze of any size in a canvas, with panning and zooming.
+ * Only the part of the maze inside the viewport is ever rasterized: the zoomed maze is
+ * split into square tiles, which are drawn straight from the cell grid when they first
+ * come into view and kept in a least-recently-used cache of bounded size, so panning
+ * back over a part of the maze seen before costs nothing. The layout matches
+ * FrameRenderer's final frame, and its solution overlay once a path is set.
+ *
+ * Zoom levels are powers of two. At level e >= 0 every maze pixel becomes a
+ * 2^e x 2^e block. Below 0 every screen pixel stands for a 2^-e x 2^-e block of maze
+ * pixels, and shows their mean colour, or red if the solution path crosses the block.
+ * Picking single pixels instead would land on the same spot of every cell once a block
+ * is as large as a cell, such as the wall corners, and draw the maze in one colour.
+ * While a block is no larger than a cell its pixels are averaged; below that, the mean
+ * is worked out from the passages of up to SAMPLES x SAMPLES cells of the block, spread
+ * evenly, and the path is drawn over it cell by cell.
+ */
+class MazeViewer {
+    static final int TILE = 256; // tile edge in screen pixels
+    private static final int CACHE_TILES = 256; // 64 MB of tiles
+    private static final int MIN_LEVEL = -8;
+    private static final int MAX_LEVEL = 5;
+    private static final int SAMPLES = 4; // cells sampled per block side when zoomed out
+    private static final int BLUE = 0xFF0000FF;
+    private static final int RED = 0xFFFF0000;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BACKGROUND = 0xFF696969;
+
+    private final CellGrid grid;
+    private final int rows;
+    private final int cols;
+    private final int width;  // unscaled pixels
+    private final int height;
+    @SuppressWarnings("serial")
+    private final Map<Long, WritableImage> tiles = new LinkedHashMap<Long, WritableImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WritableImage> eldest) {
+            return size() > CACHE_TILES;
+        }
+    };
+    private final int[] buffer = new int[TILE * TILE];
+    private final BitSet path = new BitSet();
+    private int[] pathCells = new int[0];
+    private boolean entranceOnPath;
+    private boolean exitOnPath;
+    private int level;
+    private long originX; // zoomed pixel shown at the top-left corner of the canvas
+    private long originY;
+    private int tilesRendered;
+
+    /**
+     * Class constructor for MazeViewer. Starts at the top-left corner of the maze.
+     * @param grid - The finished maze.
+     * @param scale - The preferred scale factor; the viewer starts at the largest power of two not above it.
+     */
+    MazeViewer(CellGrid grid, int scale) {
+        this.grid = grid;
+        rows = grid.rows();
+        cols = grid.cols();
+        width = cols * Main.cellSize + (Main.cellSize / 2);
+        height = rows * Main.cellSize + (Main.cellSize / 2);
+        level = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, 31 - Integer.numberOfLeadingZeros(Math.max(1, scale))));
+    }
+
+    /**
+     * Draws the part of the maze inside the viewport, filling the rest of the canvas grey.
+     * @param gc - The graphics context of the canvas to draw to.
+     */
+    void draw(GraphicsContext gc) {
+        double w = gc.getCanvas().getWidth();
+        double h = gc.getCanvas().getHeight();
+        long zoomedWidth = zoomed(width);
+        long zoomedHeight = zoomed(height);
+        originX = clamp(originX, zoomedWidth, (long) w);
+        originY = clamp(originY, zoomedHeight, (long) h);
+        gc.setFill(Color.DIMGRAY);
+        gc.fillRect(0, 0, w, h);
+        long firstX = Math.max(0, Math.floorDiv(originX, TILE));
+        long firstY = Math.max(0, Math.floorDiv(originY, TILE));
+        long lastX = Math.min(Math.floorDiv(originX + (long) w - 1, TILE), (zoomedWidth - 1) / TILE);
+        long lastY = Math.min(Math.floorDiv(originY + (long) h - 1, TILE), (zoomedHeight - 1) / TILE);
+        for(long ty = firstY; ty <= lastY; ty++) {
+            for(long tx = firstX; tx <= lastX; tx++) {
+                gc.drawImage(tile(tx, ty), tx * TILE - originX, ty * TILE - originY);
+            }
+        }
+    }
+
+    /**
+     * Moves the view by the given distance; the maze follows the mouse when dragged.
+     * @param dx - Horizontal distance in screen pixels.
+     * @param dy - Vertical distance in screen pixels.
+     */
+    void pan(double dx, double dy) {
+        originX -= Math.round(dx);
+        originY -= Math.round(dy);
+    }
+
+    /**
+     * Zooms in or out by powers of two, keeping the maze pixel under the given point in place.
+     * @param steps - Number of doublings; negative to zoom out.
+     * @param x - Horizontal position of the fixed point on the canvas.
+     * @param y - Vertical position of the fixed point on the canvas.
+     */
+    void zoom(int steps, double x, double y) {
+        int next = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level + steps));
+        double factor = Math.scalb(1.0, next - level);
+        originX = Math.round((originX + x) * factor - x);
+        originY = Math.round((originY + y) * factor - y);
+        level = next;
+    }
+
+    /**
+     * Zooms to the largest level at which the whole maze fits in the given area, and centres it.
+     * @param w - Width of the canvas.
+     * @param h - Height of the canvas.
+     */
+    void fit(double w, double h) {
+        level = MAX_LEVEL;
+        while(level > MIN_LEVEL && (zoomed(width) > w || zoomed(height) > h)) {
+            level--;
+        }
+        originX = (zoomed(width) - (long) w) / 2;
+        originY = (zoomed(height) - (long) h) / 2;
+    }
+
+    /**
+     * Draws a solution path over the maze in red, as FrameRenderer.renderSolved does.
+     * @param cells - The cell ids on the path, entrance first.
+     */
+    void setPath(int[] cells) {
+        path.clear();
+        pathCells = cells;
+        for(int cell : cells) {
+            path.set(cell);
+        }
+        entranceOnPath = cells.length > 0 && cells[0] == 0 && grid.isOpen(0, 0, CellGrid.U);
+        exitOnPath = cells.length > 0 && cells[cells.length - 1] == grid.size() - 1
+                && grid.isOpen(rows - 1, cols - 1, CellGrid.D);
+        tiles.clear();
+    }
+
+    /**
+     * @return - The current zoom factor, in screen pixels per unscaled maze pixel.
+     */
+    double getZoom() {
+        return Math.scalb(1.0, level);
+    }
+
+    /**
+     * @return - The number of tiles rasterized so far, including ones evicted from the cache.
+     */
+    int getTilesRendered() {
+        return tilesRendered;
+    }
+
+    /**
+     * Returns a tile of the zoomed maze, from the cache or freshly rasterized.
+     * @param tx - Column of the tile.
+     * @param ty - Row of the tile.
+     * @return - A TILE x TILE image; parts beyond the maze are grey.
+     */
+    private WritableImage tile(long tx, long ty) {
+        long key = ((long) (level - MIN_LEVEL) << 56) | (ty << 28) | tx;
+        WritableImage image = tiles.get(key);
+        if(image == null) {
+            image = new WritableImage(TILE, TILE);
+            rasterize(tx, ty);
+            image.getPixelWriter().setPixels(0, 0, TILE, TILE, PixelFormat.getIntArgbInstance(), buffer, 0, TILE);
+            tiles.put(key, image);
+            tilesRendered++;
+        }
+        return image;
+    }
+
+    /**
+     * Fills the buffer with a tile. Each maze pixel is worked out once per run of equal
+     * screen pixels, and rows that show the same row of maze pixels are copied.
+     */
+    private void rasterize(long tx, long ty) {
+        long zoomedWidth = zoomed(width);
+        long zoomedHeight = zoomed(height);
+        if(level < 0) {
+            for(int j = 0; j < TILE; j++) {
+                long py = ty * TILE + j;
+                for(int i = 0; i < TILE; i++) {
+                    long px = tx * TILE + i;
+                    buffer[j * TILE + i] = px >= zoomedWidth || py >= zoomedHeight ? BACKGROUND
+                            : 1 << -level <= Main.cellSize ? average(px, py) : shade(px, py);
+                }
+            }
+            if(1 << -level > Main.cellSize) {
+                drawPath(tx, ty);
+            }
+            return;
+        }
+        int previousY = -1;
+        for(int j = 0; j < TILE; j++) {
+            long py = ty * TILE + j;
+            int line = j * TILE;
+            if(py >= zoomedHeight) {
+                Arrays.fill(buffer, line, line + TILE, BACKGROUND);
+                continue;
+            }
+            int y = source(py);
+            if(y == previousY) {
+                System.arraycopy(buffer, line - TILE, buffer, line, TILE);
+                continue;
+            }
+            previousY = y;
+            int previousX = -1;
+            int colour = BACKGROUND;
+            for(int i = 0; i < TILE; i++) {
+                long px = tx * TILE + i;
+                if(px >= zoomedWidth) {
+                    colour = BACKGROUND;
+                    previousX = -1;
+                } else if(source(px) != previousX) {
+                    previousX = source(px);
+                    colour = colour(previousX, y);
+                }
+                buffer[line + i] = colour;
+            }
+        }
+    }
+
+    /**
+     * Works out the colour of one unscaled pixel of the final frame. Every cell owns the
+     * square of pixels from its left and top openings to its right and bottom ones;
+     * the outer border holds the entrance and exit.
+     * @param x - Horizontal pixel position.
+     * @param y - Vertical pixel position.
+     * @return - ARGB colour.
+     */
+    private int colour(int x, int y) {
+        int cellSize = Main.cellSize;
+        if(y == 0) {
+            return x >= 2 && x < 4 ? (entranceOnPath ? RED : WHITE) : BLUE;
+        }
+        if(y == height - 1) {
+            return x >= width - 4 && x < width - 2 ? (exitOnPath ? RED : WHITE) : BLUE;
+        }
+        if(x < 1) {
+            return BLUE;
+        }
+        int col = (x - 1) / cellSize;
+        int row = (y - 1) / cellSize;
+        if(col >= cols || row >= rows) {
+            return BLUE;
+        }
+        int dx = (x - 1) % cellSize;
+        int dy = (y - 1) % cellSize;
+        boolean innerX = dx > 0 && dx < cellSize - 1;
+        boolean innerY = dy > 0 && dy < cellSize - 1;
+        // only a maze with int cell ids can have been solved
+        boolean onPath = pathCells.length > 0 && path.get(grid.cell(row, col));
+        if(innerX && innerY) {
+            return onPath ? RED : WHITE;
+        }
+        int dir;
+        if(innerY && dx == 0) {
+            dir = CellGrid.L;
+        } else if(innerY) {
+            dir = CellGrid.R;
+        } else if(innerX && dy == 0) {
+            dir = CellGrid.U;
+        } else if(innerX) {
+            dir = CellGrid.D;
+        } else {
+            return BLUE; // corner
+        }
+        if(!grid.isOpen(row, col, dir)) {
+            return BLUE;
+        }
+        boolean red;
+        if(dir == CellGrid.U && row == 0) {
+            red = entranceOnPath;
+        } else if(dir == CellGrid.D && row == rows - 1) {
+            red = exitOnPath;
+        } else {
+            // in a perfect maze, two connected cells on the path are consecutive on it
+            red = onPath && path.get(grid.neighbour(grid.cell(row, col), dir));
+        }
+        return red ? RED : WHITE;
+    }
+
+    /**
+     * @return - The mean colour of the block of maze pixels shown at a zoomed position
+     * below level 0, or red if any of them is red.
+     */
+    private int average(long px, long py) {
+        int block = 1 << -level;
+        int light = 0;
+        int count = 0;
+        for(int y = source(py); y < Math.min(source(py) + block, height); y++) {
+            for(int x = source(px); x < Math.min(source(px) + block, width); x++) {
+                int colour = colour(x, y);
+                if(colour == RED) {
+                    return RED;
+                }
+                light += colour == WHITE ? 255 : 0;
+                count++;
+            }
+        }
+        return tint(light / count);
+    }
+
+    /**
+     * @return - The mean colour, path aside, of the maze pixels shown at a zoomed position,
+     * for blocks larger than a cell. A cell is Main.cellSize pixels square: its inside and its open sides
+     * are white, the rest blue, so its share of white follows from its number of passages.
+     */
+    private int shade(long px, long py) {
+        int cellSize = Main.cellSize;
+        int inner = cellSize - 2;
+        long block = 1L << -level;
+        // the cells whose squares start in the block; the one-pixel border is left out
+        long firstCol = Math.max(0, Math.floorDiv((px * block) - 1 + cellSize - 1, cellSize));
+        long lastCol = Math.min(cols - 1, Math.floorDiv((px + 1) * block - 2, cellSize));
+        long firstRow = Math.max(0, Math.floorDiv((py * block) - 1 + cellSize - 1, cellSize));
+        long lastRow = Math.min(rows - 1, Math.floorDiv((py + 1) * block - 2, cellSize));
+        if(firstCol > lastCol || firstRow > lastRow) {
+            return BLUE;
+        }
+        int across = (int) Math.min(SAMPLES, lastCol - firstCol + 1);
+        int down = (int) Math.min(SAMPLES, lastRow - firstRow + 1);
+        long white = 0;
+        for(int j = 0; j < down; j++) {
+            int row = (int) (firstRow + j * (lastRow - firstRow + 1) / down);
+            for(int i = 0; i < across; i++) {
+                int col = (int) (firstCol + i * (lastCol - firstCol + 1) / across);
+                white += inner * inner + inner * Integer.bitCount(grid.exits(row, col));
+            }
+        }
+        return tint((int) (255 * white / ((long) across * down * cellSize * cellSize)));
+    }
+
+    /**
+     * Marks the cells of the solution path that fall inside a tile in red, for blocks larger than a cell.
+     */
+    private void drawPath(long tx, long ty) {
+        int cellSize = Main.cellSize;
+        for(int cell : pathCells) {
+            long x = ((1 + (long) (cell % cols) * cellSize + cellSize / 2) >> -level) - tx * TILE;
+            long y = ((1 + (long) (cell / cols) * cellSize + cellSize / 2) >> -level) - ty * TILE;
+            if(x >= 0 && x < TILE && y >= 0 && y < TILE) {
+                buffer[(int) y * TILE + (int) x] = RED;
+            }
+        }
+    }
+
+    /**
+     * @return - The colour between blue (0) and white (255).
+     */
+    private static int tint(int light) {
+        return BLUE | (light << 16) | (light << 8);
+    }
+
+    /**
+     * @return - The unscaled pixel shown at the given zoomed position.
+     */
+    private int source(long zoomedPixel) {
+        return (int) (level >= 0 ? zoomedPixel >> level : zoomedPixel << -level);
+    }
+
+    /**
+     * @return - The length of n unscaled pixels at the current zoom level.
+     */
+    private long zoomed(long n) {
+        return level >= 0 ? n << level : (n + (1L << -level) - 1) >> -level;
+    }
+
+    /**
+     * Keeps as much of the maze in view as possible.
+     */
+    private static long clamp(long origin, long zoomedSize, long viewSize) {
+        long min = Math.min(0, zoomedSize - viewSize);
+        long max = Math.max(0, zoomedSize - viewSize);
+        return Math.max(min, Math.min(max, origin));
+    }
+}
@@ -0,0 +1,223 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Answers distance and path queries between any two cells of a perfect maze, after a
+ * single linear pass over it. A perfect maze is a tree; rooted at the entrance, the
+ * distance between two cells is depth(a) + depth(b) - 2 * depth(c), where c is their
+ * lowest common ancestor, and the depth of c is the smallest depth on the Euler tour of
+ * the tree between the first visits of a and b. That minimum is found in constant time,
+ * so distance is O(1); a path is walked up from both ends through the parent of every
+ * cell, in time linear in its length. Queries do not change the index, so any number
+ * of threads may query it at once.
+ *
+ * The Euler tour moves one level up or down the tree at every step, so it is stored as
+ * one bit per step (1 for down), in words of 64 steps. The depth at any position is the
+ * depth at the start of its word plus the bits counted up to it. Minimum depths are kept
+ * per word, in a sparse table over ranges of 2^k words, and found inside a word eight
+ * steps at a time from lookup tables. With the first visit of every cell and the
+ * direction to its parent, the index takes about 8 bytes per cell.
+ */
+class PathIndex {
+    private static final byte ROOT = 4; // parent direction of the root; never followed
+    private static final byte[] BYTE_MIN = new byte[256];  // lowest depth reached by 8 steps, from 0
+    private static final byte[] BYTE_MOVE = new byte[256]; // depth change over 8 steps
+
+    static {
+        for(int b = 0; b < 256; b++) {
+            int depth = 0;
+            int min = 0;
+            for(int s = 0; s < 8; s++) {
+                depth += ((b >>> s) & 1) != 0 ? 1 : -1;
+                min = Math.min(min, depth);
+            }
+            BYTE_MIN[b] = (byte) min;
+            BYTE_MOVE[b] = (byte) depth;
+        }
+    }
+
+    private final CellGrid grid;
+    private final int[] first;     // position of every cell's first visit on the tour
+    private final byte[] parent;   // direction from every cell to its parent
+    private final long[] steps;    // the tour, bit p set if step p goes down
+    private final int[] wordDepth; // depth at position 64 * w
+    private final int[][] minDepth; // minDepth[k][w]: lowest depth in words w to w + 2^k - 1
+
+    /**
+     * Class constructor for PathIndex. Walks the maze once from the entrance.
+     * @param grid - A perfect maze of at most 2^30 cells; it must not change while the index is used.
+     * @throws IllegalArgumentException - if the maze is not perfect.
+     */
+    PathIndex(CellGrid grid) {
+        int n = grid.size();
+        if(n > 1 << 30) {
+            throw new IllegalArgumentException("PathIndex supports at most 2^30 cells, not " + n);
+        }
+        this.grid = grid;
+        first = new int[n];
+        parent = new byte[n];
+        int words = (2 * n - 1 + 63) >>> 6;
+        steps = new long[words];
+        wordDepth = new int[words];
+        int[] wordMin = new int[words];
+        Arrays.fill(first, -1);
+        first[0] = 0;
+        parent[0] = ROOT;
+        // depth-first walk without a stack: on the way back up, carry on with the
+        // directions after the one that led down to the child just finished
+        int cell = 0;
+        int dir = 0;
+        int position = 0;
+        int depth = 0;
+        while(true) {
+            int exits = grid.exits(cell) & (-1 << dir);
+            if(parent[cell] != ROOT) {
+                exits &= ~(1 << parent[cell]);
+            }
+            if(exits != 0) {
+                dir = Integer.numberOfTrailingZeros(exits);
+                int child = grid.neighbour(cell, dir);
+                if(first[child] >= 0) {
+                    throw new IllegalArgumentException("The maze has a loop");
+                }
+                steps[position >>> 6] |= 1L << position;
+                depth++;
+                parent[child] = (byte) (dir ^ 1);
+                cell = child;
+                dir = 0;
+            } else if(cell != 0) {
+                int up = parent[cell];
+                depth--;
+                cell = grid.neighbour(cell, up);
+                dir = (up ^ 1) + 1;
+            } else {
+                break;
+            }
+            position++;
+            if((position & 63) == 0) {
+                wordDepth[position >>> 6] = depth;
+                wordMin[position >>> 6] = depth;
+            } else {
+                wordMin[position >>> 6] = Math.min(wordMin[position >>> 6], depth);
+            }
+            if(dir == 0) {
+                first[cell] = position;
+            }
+        }
+        if(position != 2 * n - 2) {
+            throw new IllegalArgumentException("The maze is not connected");
+        }
+        int levels = 32 - Integer.numberOfLeadingZeros(words);
+        minDepth = new int[levels][];
+        minDepth[0] = wordMin;
+        for(int k = 1; k < levels; k++) {
+            int[] below = minDepth[k - 1];
+            int[] level = new int[words - (1 << k) + 1];
+            for(int w = 0; w < level.length; w++) {
+                level[w] = Math.min(below[w], below[w + (1 << (k - 1))]);
+            }
+            minDepth[k] = level;
+        }
+    }
+
+    /**
+     * @param from - Cell id.
+     * @param to - Cell id.
+     * @return - The number of steps on the path between the two cells.
+     */
+    int distance(int from, int to) {
+        int i = first[from];
+        int j = first[to];
+        if(i > j) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        return depthAt(i) + depthAt(j) - 2 * lowest(i, j);
+    }
+
+    /**
+     * @param from - Cell id to start from.
+     * @param to - Cell id to reach.
+     * @return - The cell ids on the path, from first, in the same form as Solver's paths.
+     */
+    int[] path(int from, int to) {
+        int[] path = new int[distance(from, to) + 1];
+        int head = 0;
+        int tail = path.length - 1;
+        int a = from;
+        int b = to;
+        int depthA = depthAt(first[a]);
+        int depthB = depthAt(first[b]);
+        for(; depthA > depthB; depthA--) {
+            path[head++] = a;
+            a = grid.neighbour(a, parent[a]);
+        }
+        for(; depthB > depthA; depthB--) {
+            path[tail--] = b;
+            b = grid.neighbour(b, parent[b]);
+        }
+        while(a != b) {
+            path[head++] = a;
+            path[tail--] = b;
+            a = grid.neighbour(a, parent[a]);
+            b = grid.neighbour(b, parent[b]);
+        }
+        path[head] = a;
+        return path;
+    }
+
+    /**
+     * @return - The number of bytes used by the index.
+     */
+    long memoryBytes() {
+        long bytes = 4L * first.length + parent.length + 8L * steps.length + 4L * wordDepth.length;
+        for(int[] level : minDepth) {
+            bytes += 4L * level.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return - The depth at a position of the tour.
+     */
+    private int depthAt(int p) {
+        int down = Long.bitCount(steps[p >>> 6] & ((1L << p) - 1));
+        return wordDepth[p >>> 6] + 2 * down - (p & 63);
+    }
+
+    /**
+     * @return - The lowest depth at positions i to j of the tour, i <= j.
+     */
+    private int lowest(int i, int j) {
+        int wi = i >>> 6;
+        int wj = j >>> 6;
+        if(wi == wj) {
+            return lowestInWord(i, j);
+        }
+        int min = Math.min(lowestInWord(i, (wi << 6) | 63), lowestInWord(wj << 6, j));
+        if(wi + 1 < wj) {
+            int k = 31 - Integer.numberOfLeadingZeros(wj - wi - 1);
+            min = Math.min(min, Math.min(minDepth[k][wi + 1], minDepth[k][wj - (1 << k)]));
+        }
+        return min;
+    }
+
+    /**
+     * @return - The lowest depth at positions i to j of the tour, both in the same word.
+     */
+    private int lowestInWord(int i, int j) {
+        int n = j - i;
+        // the steps after j are taken as down, which cannot lower the minimum
+        long bits = (steps[i >>> 6] >>> i) | (-1L << n);
+        int depth = depthAt(i);
+        int min = depth;
+        for(int s = 0; s < n; s += 8) {
+            int b = (int) (bits >>> s) & 0xFF;
+            min = Math.min(min, depth + BYTE_MIN[b]);
+            depth += BYTE_MOVE[b];
+        }
+        return min;
+    }
+}
@@ -0,0 +1,292 @@
+package maze;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a finished maze to a PNG file straight from its cell grid, without
+ * going through the JavaFX image classes. The output matches the final frame
+ * shown in the UI: blue walls, white passages, scaled by scaleFactor.
+ *
+ * The image is encoded as a 1-bit palette PNG one row of cells at a time, and the
+ * compressed data is streamed to the file in fixed-size IDAT chunks, so memory
+ * use is proportional to the image width rather than to the whole image.
+ */
+class PngExport {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PALETTE = {0, 0, (byte) 255, (byte) 255, (byte) 255, (byte) 255}; // wall, path
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private PngExport() {
+    }
+
+    /**
+     * Writes the maze as a PNG image, scaled by the given factor.
+     * @param grid - The maze grid.
+     * @param scale - Integer scale factor applied to every pixel.
+     * @param file - Destination file.
+     * @throws IOException - if the file cannot be written.
+     */
+    static void write(CellGrid grid, int scale, File file) throws IOException {
+        int rows = grid.rows();
+        int cols = grid.cols();
+        try(RowWriter writer = new RowWriter(rows, cols, scale, file,
+                grid.isOpen(0, 0, CellGrid.U), grid.isOpen(rows - 1, cols - 1, CellGrid.D))) {
+            byte[] row = new byte[cols];
+            for(int r = 0; r < rows; r++) {
+                grid.copyRow(r, row);
+                writer.row(r, row);
+            }
+        }
+    }
+
+    /**
+     * @param cells - Number of cells along one side of the maze.
+     * @return - Number of unscaled pixels along that side of the image.
+     */
+    private static long pixels(long cells) {
+        return cells * Main.cellSize + (Main.cellSize / 2);
+    }
+
+    /**
+     * Writes a PNG image of a maze that arrives one row of cells at a time, for example
+     * from Eller. Each row of cells is turned into its band of scanlines as soon as it
+     * arrives, so only the current and previous rows are held in memory. The layout is
+     * the same as FrameRenderer's final frame. The image is complete once all rows have
+     * been passed in and the writer is closed.
+     */
+    static class RowWriter implements RowSink, Closeable {
+        private final long rows;
+        private final int cols;
+        private final int scale;
+        private final boolean entry;
+        private final boolean exit;
+        private final DataOutputStream out;
+        private final Deflater deflater;
+        private final DeflaterOutputStream data;
+        private final byte[] above; // the previous row of cells
+        private final byte[] line;  // filter type byte, then 8 pixels per byte
+        private final int width;
+        private long next;
+
+        /**
+         * Class constructor for RowWriter. Writes the image header straight away.
+         * @param rows - Number of rows of cells that will be written.
+         * @param cols - Number of columns of cells.
+         * @param scale - Integer scale factor applied to every pixel.
+         * @param file - Destination file.
+         * @param entry - Whether the entrance above the top-left cell is open.
+         * @param exit - Whether the exit below the bottom-right cell is open.
+         * @throws IOException - if the image is too large for a PNG or the file cannot be written.
+         */
+        RowWriter(long rows, int cols, int scale, File file, boolean entry, boolean exit) throws IOException {
+            long scaledWidth = pixels(cols) * scale;
+            long scaledHeight = pixels(rows) * scale;
+            if(scaledWidth > Integer.MAX_VALUE || scaledHeight > Integer.MAX_VALUE) {
+                throw new IOException("Maze is too large for a PNG image at scale factor " + scale);
+            }
+            this.rows = rows;
+            this.cols = cols;
+            this.scale = scale;
+            this.entry = entry;
+            this.exit = exit;
+            width = (int) pixels(cols);
+            above = new byte[cols];
+            line = new byte[1 + (int) ((scaledWidth + 7) / 8)];
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), CHUNK_SIZE));
+            try {
+                out.write(SIGNATURE);
+
+                DataOutputStream header = new DataOutputStream(new ChunkStream(out, "IHDR"));
+                header.writeInt((int) scaledWidth);
+                header.writeInt((int) scaledHeight);
+                header.writeByte(1); // bit depth
+                header.writeByte(3); // colour type: palette
+                header.writeByte(0); // compression
+                header.writeByte(0); // filter
+                header.writeByte(0); // interlace
+                header.close();
+
+                ChunkStream palette = new ChunkStream(out, "PLTE");
+                palette.write(PALETTE);
+                palette.close();
+            } catch(IOException ex) {
+                out.close();
+                throw ex;
+            }
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            data = new DeflaterOutputStream(new ChunkStream(out, "IDAT"), deflater, CHUNK_SIZE);
+        }
+
+        /**
+         * Encodes the band of scanlines covering one row of cells: the wall above it
+         * (two pixels, with the passages down from the row above) and the cell interiors.
+         * @param r - Index of the row; rows must arrive in order.
+         * @param cells - The cells of the row.
+         * @throws IOException - if the data cannot be written.
+         */
+        @Override
+        public void row(long r, byte[] cells) throws IOException {
+            if(r != next || r >= rows) {
+                throw new IllegalStateException(String.format("Expected row %d of %d, got row %d", next, rows, r));
+            }
+            int cellSize = Main.cellSize;
+            if(r == 0) {
+                // the outer border, with the entrance
+                clear();
+                if(entry) {
+                    set(2, 2);
+                }
+                emit(1);
+                clear();
+                if(entry) {
+                    set(2, cellSize - 2);
+                }
+                emit(1);
+            } else {
+                clear();
+                for(int c = 0; c < cols; c++) {
+                    if((above[c] & CellGrid.OPEN_DOWN) != 0) {
+                        set(c * cellSize + 2, cellSize - 2);
+                    }
+                }
+                emit(2);
+            }
+            clear();
+            for(int c = 0; c < cols; c++) {
+                set(c * cellSize + 2, cellSize - 2);
+                if(c > 0 && (cells[c - 1] & CellGrid.OPEN_RIGHT) != 0) {
+                    set(c * cellSize, 2);
+                }
+            }
+            emit(cellSize - 2);
+            System.arraycopy(cells, 0, above, 0, cols);
+            next++;
+        }
+
+        /**
+         * Writes the bottom border with the exit and finishes the file.
+         * @throws IOException - if the data cannot be written, or not all rows were written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if(next == rows) {
+                    int cellSize = Main.cellSize;
+                    long height = pixels(rows);
+                    for(long y = rows * cellSize; y < height - 1; y++) {
+                        clear();
+                        if(exit && y == rows * cellSize) {
+                            set((cols - 1) * cellSize + 2, cellSize - 2);
+                        }
+                        emit(1);
+                    }
+                    clear();
+                    if(exit) {
+                        set(width - 4, 2);
+                    }
+                    emit(1);
+                    data.close();
+                    new ChunkStream(out, "IEND").close();
+                } else {
+                    throw new IOException(String.format("Image incomplete: %d of %d rows written", next, rows));
+                }
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(line, (byte) 0);
+        }
+
+        /**
+         * Marks w unscaled pixels starting at x as passage in the current scanline.
+         */
+        private void set(int x, int w) {
+            for(int px = x * scale; px < (x + w) * scale; px++) {
+                line[1 + (px >> 3)] |= 0x80 >>> (px & 7);
+            }
+        }
+
+        /**
+         * Writes the current scanline for n unscaled pixel rows.
+         */
+        private void emit(int n) throws IOException {
+            for(int i = 0; i < n * scale; i++) {
+                data.write(line);
+            }
+        }
+    }
+
+    /**
+     * Buffers bytes into PNG chunks of the given type, emitting a chunk with its
+     * length and CRC whenever CHUNK_SIZE bytes are buffered and when closed.
+     * Closing does not close the underlying stream.
+     */
+    private static class ChunkStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] type;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private int length;
+        private boolean written;
+
+        ChunkStream(DataOutputStream out, String type) {
+            this.out = out;
+            this.type = type.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if(length == buffer.length) {
+                emit();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0) {
+                if(length == buffer.length) {
+                    emit();
+                }
+                int n = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(length > 0 || !written) {
+                emit();
+            }
+        }
+
+        private void emit() throws IOException {
+            crc.reset();
+            crc.update(type);
+            crc.update(buffer, 0, length);
+            out.writeInt(length);
+            out.write(type);
+            out.write(buffer, 0, length);
+            out.writeInt((int) crc.getValue());
+            length = 0;
+            written = true;
+        }
+    }
+}
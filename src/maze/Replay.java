@@ -0,0 +1,170 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The state of a maze part-way through its generation, rebuilt by applying carve
+ * events one at a time: the passages carved so far, the marked (frontier/stack)
+ * cells and the current cell.
+ *
+ * The cells whose appearance changed since the last call to clean are tracked, so a
+ * display only has to repaint those. Once more than a quarter of the cells have changed,
+ * or the state was copied, the whole state counts as changed instead.
+ */
+class Replay {
+    private final CellGrid grid;
+    private final BitSet marks;
+    private int current = -1;
+
+    private final BitSet dirty = new BitSet();
+    private int[] dirtyCells = new int[0];
+    private int dirtyCount;
+    private boolean allDirty = true;
+
+    /**
+     * Class constructor for Replay. Starts from a maze with every wall closed.
+     * @param rows - Number of rows.
+     * @param cols - Number of columns.
+     */
+    Replay(int rows, int cols) {
+        grid = new CellGrid(rows, cols);
+        marks = new BitSet();
+    }
+
+    private Replay(Replay other) {
+        grid = other.grid.copy();
+        marks = (BitSet) other.marks.clone();
+        current = other.current;
+    }
+
+    /**
+     * @return - An independent copy of this state.
+     */
+    Replay copy() {
+        return new Replay(this);
+    }
+
+    /**
+     * @return - The number of bytes a copy of this state takes at most, with every cell marked.
+     */
+    long memoryBytes() {
+        return memoryBytes(grid.rows(), grid.cols());
+    }
+
+    /**
+     * @param rows - Number of rows.
+     * @param cols - Number of columns.
+     * @return - The number of bytes a state of a maze of that size takes at most, as memoryBytes.
+     */
+    static long memoryBytes(int rows, int cols) {
+        long cells = (long) rows * cols;
+        return cells * CellGrid.BYTES_PER_CELL + (cells + 7) / 8;
+    }
+
+    /**
+     * Applies one event.
+     * @param cell - The cell of the event.
+     * @param kind - One of CarveLog.CARVE, MARK, UNMARK, STEP.
+     * @param direction - The carved direction, for CARVE events.
+     * @return - True if the event ended a frame.
+     */
+    boolean apply(int cell, int kind, int direction) {
+        switch(kind) {
+            case CarveLog.CARVE:
+                grid.carve(cell / grid.cols(), cell % grid.cols(), direction);
+                touch(cell);
+                touch(grid.neighbour(cell, direction));
+                return false;
+            case CarveLog.MARK:
+                marks.set(cell);
+                touch(cell);
+                return false;
+            case CarveLog.UNMARK:
+                marks.clear(cell);
+                touch(cell);
+                return false;
+            default:
+                if(current != cell) {
+                    touch(current);
+                    touch(cell);
+                    if(cell == -1) {
+                        // the final frame also shows the entrance and exit
+                        invalidate();
+                    }
+                }
+                current = cell;
+                return true;
+        }
+    }
+
+    /**
+     * Records that the given cell must be repainted.
+     * @param cell - Cell id, or -1 for none.
+     */
+    private void touch(int cell) {
+        if(allDirty || cell < 0 || dirty.get(cell)) {
+            return;
+        }
+        if(dirtyCount >= Math.max(16, grid.size() / 4)) {
+            invalidate();
+            return;
+        }
+        if(dirtyCount == dirtyCells.length) {
+            dirtyCells = Arrays.copyOf(dirtyCells, Math.max(64, dirtyCount * 2));
+        }
+        dirty.set(cell);
+        dirtyCells[dirtyCount++] = cell;
+    }
+
+    /**
+     * Marks the whole state as changed, for example when the display was drawn over.
+     */
+    void invalidate() {
+        allDirty = true;
+    }
+
+    /**
+     * @return - True if the whole state must be repainted rather than the cells in dirtyCells.
+     */
+    boolean isAllDirty() {
+        return allDirty;
+    }
+
+    /**
+     * @return - The cells changed since the last clean, in the first dirtyCount entries.
+     */
+    int[] dirtyCells() {
+        return dirtyCells;
+    }
+
+    int dirtyCount() {
+        return dirtyCount;
+    }
+
+    /**
+     * Forgets the changes, once they have been repainted.
+     */
+    void clean() {
+        for(int i = 0; i < dirtyCount; i++) {
+            dirty.clear(dirtyCells[i]);
+        }
+        dirtyCount = 0;
+        allDirty = false;
+    }
+
+    CellGrid grid() {
+        return grid;
+    }
+
+    BitSet marks() {
+        return marks;
+    }
+
+    /**
+     * @return - The current cell of the last frame, or -1 before the first frame and after the last.
+     */
+    int current() {
+        return current;
+    }
+}
@@ -0,0 +1,257 @@
+package maze;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generators in which every row of the maze is decided on its own: Binary Tree and
+ * Sidewinder. Each cell below the top row is joined either to its right or upwards,
+ * and the choices of one row never depend on another, so rows can be generated in
+ * any order and on any number of threads.
+ *
+ * A row's choices are kept as bit sets, one long per 64 columns: 'right' has bit c
+ * set if cell c is joined to its right neighbour, 'up' if it is joined upwards. Every
+ * row draws its random numbers from its own SplittableRandom, seeded from the maze
+ * seed and the row index, so the maze only depends on the seed and not on how the
+ * rows were split between threads. An upward passage is stored in the cell above,
+ * so writing out row r needs the 'up' bits of row r + 1, which are simply decided
+ * again by whichever band of rows owns row r + 1.
+ */
+abstract class RowGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int SLAB_CELLS = 1 << 22; // cells filled between progress reports
+    private static final int BAND_CELLS = 1 << 16; // smallest band of rows handed to one thread
+
+    final int cols;
+    final int words;
+
+    /**
+     * @param c - Number of columns.
+     */
+    RowGenerator(int c) {
+        if(c < 1) {
+            throw new IllegalArgumentException("Invalid number of columns " + c);
+        }
+        cols = c;
+        words = (c + 63) >>> 6;
+    }
+
+    /**
+     * @param c - Number of columns.
+     * @return - A Binary Tree generator: every cell is joined upwards or to the right with equal chance.
+     */
+    static RowGenerator binaryTree(int c) {
+        return new BinaryTree(c);
+    }
+
+    /**
+     * @param c - Number of columns.
+     * @return - A Sidewinder generator: runs of cells joined to the right, each joined upwards through one random cell.
+     */
+    static RowGenerator sidewinder(int c) {
+        return new Sidewinder(c);
+    }
+
+    /**
+     * Decides the passages of one row below the top row.
+     * @param random - The row's own source of randomness.
+     * @param right - Receives the bits of the cells joined to their right neighbour.
+     * @param up - Receives the bits of the cells joined upwards.
+     */
+    abstract void decide(SplittableRandom random, long[] right, long[] up);
+
+    /**
+     * Generates rows from to to - 1, in order, passing each to the sink.
+     * @param seed - The maze seed; the same seed always gives the same maze.
+     * @param rows - Number of rows in the whole maze.
+     * @param from - First row to generate.
+     * @param to - Row to stop at.
+     * @param sink - Receives the rows.
+     * @throws IOException - if the sink fails to write a row.
+     */
+    void generate(long seed, long rows, long from, long to, RowSink sink) throws IOException {
+        long[] right = new long[words];
+        long[] up = new long[words];
+        long[] nextRight = new long[words];
+        long[] nextUp = new long[words];
+        byte[] cells = new byte[cols];
+        decideRow(seed, from, right, up);
+        for(long r = from; r < to; r++) {
+            if(r + 1 < rows) {
+                decideRow(seed, r + 1, nextRight, nextUp);
+            } else {
+                Arrays.fill(nextUp, 0);
+            }
+            for(int c = 0; c < cols; c++) {
+                cells[c] = (byte) (((right[c >>> 6] >>> c) & 1) * CellGrid.OPEN_RIGHT
+                        | ((nextUp[c >>> 6] >>> c) & 1) * CellGrid.OPEN_DOWN);
+            }
+            sink.row(r, cells);
+            long[] swap = right;
+            right = nextRight;
+            nextRight = swap;
+            swap = up;
+            up = nextUp;
+            nextUp = swap;
+        }
+    }
+
+    /**
+     * Fills every row of a grid, splitting the rows into bands generated in parallel on
+     * the current fork/join pool, or the common pool if not called from one. Progress is
+     * reported on the calling thread between slabs of rows.
+     * @param seed - The maze seed.
+     * @param grid - The grid to fill; it must have cols columns.
+     * @param progress - Told how many passages are done after every slab, or null.
+     */
+    void fill(long seed, CellGrid grid, Maze.Progress progress) {
+        int rows = grid.rows();
+        int slab = Math.max(1, SLAB_CELLS / cols);
+        int band = Math.max(1, BAND_CELLS / cols);
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        for(int from = 0; from < rows; from += slab) {
+            Bands bands = new Bands(seed, grid, from, Math.min(rows, from + slab), band);
+            if(pool != null) {
+                bands.invoke();
+            } else {
+                ForkJoinPool.commonPool().invoke(bands);
+            }
+            if(progress != null) {
+                progress.update(Math.min((long) Math.min(rows, from + slab) * cols, grid.cellCount() - 1), grid.cellCount() - 1);
+            }
+        }
+    }
+
+    /**
+     * Decides the passages of row r; the top row is one corridor to the right.
+     */
+    private void decideRow(long seed, long r, long[] right, long[] up) {
+        if(r == 0) {
+            for(int w = 0; w < words; w++) {
+                right[w] = hasRight(w);
+                up[w] = 0;
+            }
+        } else {
+            decide(new SplittableRandom(mix(seed + r * GOLDEN_GAMMA)), right, up);
+        }
+    }
+
+    /**
+     * @return - The bits of word w for the columns that have a right neighbour.
+     */
+    final long hasRight(int w) {
+        return below(cols - 1 - 64 * w);
+    }
+
+    /**
+     * @return - The bits of word w for the columns inside the grid.
+     */
+    final long inside(int w) {
+        return below(cols - 64 * w);
+    }
+
+    private static long below(int n) {
+        return n >= 64 ? -1L : n <= 0 ? 0 : (1L << n) - 1;
+    }
+
+    /**
+     * The MurmurHash3 finalizer, as used by SplittableRandom, so neighbouring rows get unrelated seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Binary Tree: one random bit per cell picks up or right; cells in the last column
+     * have no right neighbour and always go up. A whole word of cells is decided by one
+     * random long.
+     */
+    private static final class BinaryTree extends RowGenerator {
+        BinaryTree(int c) {
+            super(c);
+        }
+
+        @Override
+        void decide(SplittableRandom random, long[] right, long[] up) {
+            for(int w = 0; w < words; w++) {
+                long bits = random.nextLong() | (inside(w) & ~hasRight(w));
+                up[w] = bits & inside(w);
+                right[w] = ~bits & hasRight(w);
+            }
+        }
+    }
+
+    /**
+     * Sidewinder: one random bit per cell decides whether the current run of cells carries
+     * on to the right; when a run ends, one of its cells chosen at random is joined upwards.
+     * The runs are found a word at a time from the cleared bits.
+     */
+    private static final class Sidewinder extends RowGenerator {
+        Sidewinder(int c) {
+            super(c);
+        }
+
+        @Override
+        void decide(SplittableRandom random, long[] right, long[] up) {
+            Arrays.fill(up, 0);
+            int runStart = 0;
+            for(int w = 0; w < words; w++) {
+                right[w] = random.nextLong() & hasRight(w);
+                for(long ends = ~right[w] & inside(w); ends != 0; ends &= ends - 1) {
+                    int end = 64 * w + Long.numberOfTrailingZeros(ends);
+                    int k = runStart + random.nextInt(end - runStart + 1);
+                    up[k >>> 6] |= 1L << k;
+                    runStart = end + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a range of rows straight into the grid, halving the range until it is
+     * no more than one band. Bands write disjoint rows, so they can run concurrently.
+     */
+    @SuppressWarnings("serial")
+    private class Bands extends RecursiveAction {
+        private final long seed;
+        private final CellGrid grid;
+        private final int from;
+        private final int to;
+        private final int band;
+
+        Bands(long seed, CellGrid grid, int from, int to, int band) {
+            this.seed = seed;
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+            this.band = band;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= band) {
+                try {
+                    generate(seed, grid.rows(), from, to, new RowSink() {
+                        @Override
+                        public void row(long r, byte[] cells) {
+                            grid.setRow((int) r, cells);
+                        }
+                    });
+                } catch(IOException ex) {
+                    // writing into the grid does no I/O
+                    throw new UncheckedIOException(ex);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Bands(seed, grid, from, middle, band), new Bands(seed, grid, middle, to, band));
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package maze;
+
+import java.io.IOException;
+
+/**
+ * Receives a maze one finished row at a time, from the top row down.
+ * Cells use the CellGrid byte layout (CellGrid.OPEN_RIGHT, CellGrid.OPEN_DOWN).
+ * The array is reused for the following row, so it must be copied if it is kept.
+ */
+interface RowSink {
+    /**
+     * @param r - Index of the row, starting at 0.
+     * @param cells - The cells of the row, one byte per column.
+     * @throws IOException - if the row cannot be written.
+     */
+    void row(long r, byte[] cells) throws IOException;
+}
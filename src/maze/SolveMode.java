@@ -0,0 +1,7 @@
+package maze;
+
+public enum SolveMode {
+    BFS,
+    ASTAR,
+    DEADEND
+}
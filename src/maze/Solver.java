@@ -0,0 +1,296 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Finds the path between two cells of a maze, working directly on its CellGrid.
+ * All bookkeeping is done with primitive arrays indexed by cell id, so solving
+ * needs no image round trip and allocates nothing per visited cell.
+ */
+class Solver {
+    // the state of a cell during a search: its open directions, then its parent entry
+    private static final int OPEN = 0xF;
+    private static final int PARENT = 4; // shift of the parent entry
+    private static final int PARENT_BITS = 7 << PARENT;
+    private static final int FROM_GOAL = 0x80; // reached from the goal, in bfs
+    private static final byte ROOT = 5; // parent entry of the start cell; never followed
+
+    private final CellGrid grid;
+    private int explored;
+
+    /**
+     * Class constructor for Solver.
+     * @param grid - The maze to solve.
+     */
+    Solver(CellGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Solves the maze from its entrance (top-left cell) to its exit (bottom-right cell).
+     * @param mode - The solving algorithm to use.
+     * @return - The cell ids on the path, entrance first, or null if there is no path.
+     */
+    int[] solve(SolveMode mode) {
+        return solve(mode, 0, grid.size() - 1);
+    }
+
+    /**
+     * Finds the path between two cells.
+     * @param mode - The solving algorithm to use.
+     * @param start - Cell id to start from.
+     * @param goal - Cell id to reach.
+     * @return - The cell ids on the path, start first, or null if there is no path.
+     */
+    int[] solve(SolveMode mode, int start, int goal) {
+        switch(mode) {
+            case BFS:
+                return bfs(start, goal);
+            case ASTAR:
+                return aStar(start, goal);
+            case DEADEND:
+                return deadEndFill(start, goal);
+            default:
+                throw new IllegalArgumentException("Unknown solve mode " + mode);
+        }
+    }
+
+    /**
+     * @return - The number of cells examined by the last solve.
+     */
+    int getExplored() {
+        return explored;
+    }
+
+    /**
+     * Breadth-first search from both ends at once, a whole level of the smaller frontier at
+     * a time, until a cell reached from one end has a neighbour reached from the other.
+     * Both frontiers are always complete levels, so the first such meeting gives a shortest
+     * path, and in a branching maze far fewer cells are reached than from one end. Both searches share one int array as their queue:
+     * the one from start fills it from the front, the one from goal from the back.
+     */
+    private int[] bfs(int start, int goal) {
+        byte[] state = openings();
+        if(start == goal) {
+            explored = 1;
+            return new int[] {start};
+        }
+        int[] queue = new int[state.length];
+        int[] head = {0, queue.length - 1};
+        int[] tail = {1, queue.length - 2};
+        queue[0] = start;
+        queue[queue.length - 1] = goal;
+        state[start] |= ROOT << PARENT;
+        state[goal] |= ROOT << PARENT | FROM_GOAL;
+        explored = 0;
+        while(head[0] != tail[0] && head[1] != tail[1]) {
+            int side = tail[0] - head[0] <= head[1] - tail[1] ? 0 : 1;
+            int step = side == 0 ? 1 : -1;
+            int mark = side == 0 ? 0 : FROM_GOAL;
+            int end = tail[side];
+            for(int i = head[side]; i != end; i += step) {
+                int cell = queue[i];
+                explored++;
+                for(int exits = state[cell] & OPEN & ~(1 << (state[cell] >> PARENT & 7) - 1); exits != 0; exits &= exits - 1) {
+                    int dir = Integer.numberOfTrailingZeros(exits);
+                    int next = grid.neighbour(cell, dir);
+                    int reached = state[next];
+                    if((reached & PARENT_BITS) == 0) {
+                        state[next] = (byte) (reached | back(dir) << PARENT | mark);
+                        queue[tail[side]] = next;
+                        tail[side] += step;
+                    } else if((reached & FROM_GOAL) != mark) {
+                        return side == 0 ? join(state, cell, next, start, goal) : join(state, next, cell, start, goal);
+                    }
+                }
+            }
+            head[side] = end;
+        }
+        return null;
+    }
+
+    /**
+     * A* search with a Manhattan distance heuristic. A step to a neighbour changes the
+     * distance to the goal by exactly one, so the f-score of every cell reached is either
+     * that of the cell it was reached from or two more, and the open set is just two stacks:
+     * one for the lowest f-score and one for the next. Taking cells last in first out heads
+     * straight for the goal while it can. The heuristic never drops by more than a step, so
+     * the first time a cell is taken it has been reached along a shortest path; its parent
+     * entry, which travels with it on the stack, is only stored then, and any later entry
+     * for it is skipped.
+     */
+    private int[] aStar(int start, int goal) {
+        int cols = grid.cols();
+        int goalRow = goal / cols;
+        int goalCol = goal % cols;
+        byte[] state = openings();
+        long[] now = new long[64];
+        long[] later = new long[64];
+        int sizeNow = 0;
+        int sizeLater = 0;
+        now[sizeNow++] = (long) start << 3 | ROOT;
+        explored = 0;
+        while(sizeNow > 0 || sizeLater > 0) {
+            if(sizeNow == 0) {
+                long[] swap = now;
+                now = later;
+                later = swap;
+                sizeNow = sizeLater;
+                sizeLater = 0;
+            }
+            long top = now[--sizeNow];
+            int cell = (int) (top >>> 3);
+            if((state[cell] & PARENT_BITS) != 0) {
+                continue; // taken before
+            }
+            state[cell] |= (top & 7) << PARENT;
+            explored++;
+            if(cell == goal) {
+                break;
+            }
+            int row = cell / cols;
+            int col = cell - row * cols;
+            for(int exits = state[cell] & OPEN & ~(1 << (int) (top & 7) - 1); exits != 0; exits &= exits - 1) {
+                int dir = Integer.numberOfTrailingZeros(exits);
+                int next = grid.neighbour(cell, dir);
+                if((state[next] & PARENT_BITS) != 0) {
+                    continue;
+                }
+                long entry = (long) next << 3 | back(dir);
+                boolean closer = dir == CellGrid.L ? col > goalCol
+                        : dir == CellGrid.R ? col < goalCol
+                        : dir == CellGrid.U ? row > goalRow
+                        : row < goalRow;
+                if(closer) {
+                    if(sizeNow == now.length) {
+                        now = Arrays.copyOf(now, sizeNow * 2);
+                    }
+                    now[sizeNow++] = entry;
+                } else {
+                    if(sizeLater == later.length) {
+                        later = Arrays.copyOf(later, sizeLater * 2);
+                    }
+                    later[sizeLater++] = entry;
+                }
+            }
+        }
+        return (state[goal] & PARENT_BITS) == 0 ? null : join(state, goal, -1, start, goal);
+    }
+
+    /**
+     * Dead-end filling: fills in every cell other than start and goal with a single open
+     * passage, closing that passage from the other side too, until only the path between
+     * start and goal is left, then walks that path. The cells are scanned in order; when
+     * filling one leaves a neighbour the scan has already passed as a new dead end, that
+     * neighbour is filled straight away, and so on along its corridor, so nothing is queued.
+     * Loops are never filled, so in a maze that is not perfect, such as a file from elsewhere,
+     * the open cells left branch somewhere along the way; there the path is found with bfs.
+     */
+    private int[] deadEndFill(int start, int goal) {
+        byte[] open = openings();
+        int n = open.length;
+        for(int first = 0; first < n; first++) {
+            int cell = first;
+            while(cell != start && cell != goal && Integer.bitCount(open[cell]) == 1) {
+                int dir = Integer.numberOfTrailingZeros(open[cell]);
+                open[cell] = 0;
+                cell = grid.neighbour(cell, dir);
+                open[cell] &= ~(1 << (dir ^ 1));
+                if(cell > first) {
+                    break; // the scan will get to it
+                }
+            }
+        }
+        explored = n;
+        // the open cells left form the path; follow it from the start, never straight back
+        int[] path = new int[64];
+        int length = 0;
+        int from = -1;
+        int cell = start;
+        path[length++] = cell;
+        while(cell != goal) {
+            int exits = open[cell] & ~(from < 0 ? 0 : 1 << (from ^ 1));
+            if(Integer.bitCount(exits) > 1) {
+                // only a loop survives filling with a branch; bfs counts its own cells, then add the fill
+                int[] found = bfs(start, goal);
+                explored += n;
+                return found;
+            }
+            if(exits == 0 || length == n) {
+                return null;
+            }
+            from = Integer.numberOfTrailingZeros(exits);
+            cell = grid.neighbour(cell, from);
+            if(length == path.length) {
+                path = Arrays.copyOf(path, (int) Math.min(2L * length, n));
+            }
+            path[length++] = cell;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * @return - The open directions of every cell, from CellGrid.exits, in the low bits of
+     * one byte per cell. The grid is read once in order; the searches then touch only this
+     * array, and keep their own state in its upper bits.
+     */
+    private byte[] openings() {
+        byte[] state = new byte[grid.size()];
+        grid.copyExits(state);
+        return state;
+    }
+
+    /**
+     * Joins the paths back to start from a and to goal from b, two neighbouring cells
+     * reached from start and from goal respectively; b is -1 if a is the goal itself.
+     * @return - The path from start to goal.
+     */
+    private int[] join(byte[] state, int a, int b, int start, int goal) {
+        int toStart = 0;
+        for(int cell = a; cell != start; cell = step(cell, state[cell])) {
+            toStart++;
+        }
+        int toGoal = 0;
+        for(int cell = b; b >= 0 && cell != goal; cell = step(cell, state[cell])) {
+            toGoal++;
+        }
+        int[] path = new int[toStart + 1 + (b < 0 ? 0 : toGoal + 1)];
+        int cell = a;
+        for(int i = toStart; i > 0; i--) {
+            path[i] = cell;
+            cell = step(cell, state[cell]);
+        }
+        path[0] = start;
+        cell = b;
+        for(int i = toStart + 1; i < path.length - 1; i++) {
+            path[i] = cell;
+            cell = step(cell, state[cell]);
+        }
+        path[path.length - 1] = b < 0 ? a : goal;
+        return path;
+    }
+
+    /**
+     * @return - The parent entry for a cell entered by moving in direction dir.
+     */
+    private static byte back(int dir) {
+        // L <-> R and U <-> D, offset by one so that 0 means unreached
+        return (byte) ((dir ^ 1) + 1);
+    }
+
+    /**
+     * @return - The cell reached by following the parent entry in a cell's state.
+     */
+    private int step(int cell, byte state) {
+        switch((state >> PARENT & 7) - 1) {
+            case CellGrid.L:
+                return cell - 1;
+            case CellGrid.R:
+                return cell + 1;
+            case CellGrid.U:
+                return cell - grid.cols();
+            default:
+                return cell + grid.cols();
+        }
+    }
+}
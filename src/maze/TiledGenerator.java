@@ -0,0 +1,169 @@
+package maze;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates one large maze in parallel. The grid is split into rectangular tiles,
+ * every tile is generated as an independent maze with any MazeMode on a ForkJoinPool,
+ * and the tiles are pasted into the full grid.
+ *
+ * Each tile on its own is a perfect maze (a spanning tree of its cells). The tiles are
+ * then stitched together along a random spanning tree of the tile graph, itself generated
+ * with Wilson's algorithm: for every edge of that tree exactly one passage is opened
+ * through the seam between the two tiles. Joining trees along the edges of a tree gives
+ * a tree, so the result is again a perfect maze.
+ *
+ * Note the seams are visible in the texture of the maze, since long corridors cannot
+ * cross them except at the stitching points.
+ */
+class TiledGenerator {
+    private final int rows;
+    private final int cols;
+    private final MazeMode mode;
+    private final int[] rowBounds; // tile i covers rows rowBounds[i] to rowBounds[i + 1] - 1
+    private final int[] colBounds;
+    private final Random rng = new Random();
+    private CellGrid grid;
+    private GrowthPolicy policy = GrowthPolicy.NEWEST;
+    private GridStorage storage = GridStorage.HEAP;
+
+    /**
+     * Class constructor for TiledGenerator.
+     * @param r - Number of rows of the maze.
+     * @param c - Number of columns of the maze.
+     * @param tileSize - Preferred number of rows and columns per tile; tiles at the edge may be larger.
+     * @param mode - The generation algorithm used inside each tile.
+     */
+    TiledGenerator(int r, int c, int tileSize, MazeMode mode) {
+        if(tileSize < 2) {
+            throw new IllegalArgumentException("Invalid tile size " + tileSize);
+        }
+        rows = r;
+        cols = c;
+        this.mode = mode;
+        rowBounds = bounds(r, tileSize);
+        colBounds = bounds(c, tileSize);
+    }
+
+    /**
+     * Sets how the GROWINGTREE mode picks the cell to grow from inside each tile.
+     * @param p - The selection policy.
+     */
+    void setPolicy(GrowthPolicy p) {
+        policy = p;
+    }
+
+    /**
+     * Sets where the cells of the full maze are kept; the tiles themselves are always on the heap.
+     * Off the heap the maze may have more than 2^31 cells, whatever the mode.
+     * @param s - The storage; HEAP by default.
+     */
+    void setStorage(GridStorage s) {
+        storage = s;
+    }
+
+    /**
+     * Splits n cells into n / tileSize nearly equal parts (at least one).
+     * @return - The start of every part, followed by n.
+     */
+    private static int[] bounds(int n, int tileSize) {
+        int parts = Math.max(1, n / tileSize);
+        int[] bounds = new int[parts + 1];
+        for(int i = 0; i <= parts; i++) {
+            bounds[i] = (int) ((long) n * i / parts);
+        }
+        return bounds;
+    }
+
+    /**
+     * @return - The number of tiles the maze is split into.
+     */
+    int tiles() {
+        return (rowBounds.length - 1) * (colBounds.length - 1);
+    }
+
+    /**
+     * Generates the maze, running the tiles in parallel on the given pool.
+     * @param pool - The pool to generate the tiles on.
+     * @return - The finished maze, with its entrance and exit open.
+     */
+    CellGrid generate(ForkJoinPool pool) {
+        grid = storage.createGrid(rows, cols);
+        Tiles all = new Tiles(0, tiles());
+        if(ForkJoinTask.getPool() == pool) {
+            // already running on the pool, e.g. inside a batch: fork from this worker
+            all.invoke();
+        } else {
+            pool.invoke(all);
+        }
+        stitch();
+        grid.setEntryExit();
+        return grid;
+    }
+
+    /**
+     * Generates tile number i and copies it into the grid. Tiles never overlap,
+     * so they can be written concurrently.
+     */
+    private void generateTile(int i) {
+        int tileCols = colBounds.length - 1;
+        int tileRow = i / tileCols;
+        int tileCol = i % tileCols;
+        int r0 = rowBounds[tileRow];
+        int c0 = colBounds[tileCol];
+        Maze tile = new Maze(rowBounds[tileRow + 1] - r0, colBounds[tileCol + 1] - c0);
+        tile.setPolicy(policy);
+        tile.generate(mode);
+        grid.paste(r0, c0, tile.getGrid());
+    }
+
+    /**
+     * Opens one passage through the seam for every edge of a random spanning tree of the tiles.
+     */
+    private void stitch() {
+        int tileRows = rowBounds.length - 1;
+        int tileCols = colBounds.length - 1;
+        Maze tree = new Maze(tileRows, tileCols);
+        tree.wilson();
+        CellGrid edges = tree.getGrid();
+        for(int i = 0; i < tileRows; i++) {
+            for(int j = 0; j < tileCols; j++) {
+                if(j < tileCols - 1 && edges.isOpen(i, j, CellGrid.R)) {
+                    int r = rowBounds[i] + rng.nextInt(rowBounds[i + 1] - rowBounds[i]);
+                    grid.carve(r, colBounds[j + 1] - 1, CellGrid.R);
+                }
+                if(i < tileRows - 1 && edges.isOpen(i, j, CellGrid.D)) {
+                    int c = colBounds[j] + rng.nextInt(colBounds[j + 1] - colBounds[j]);
+                    grid.carve(rowBounds[i + 1] - 1, c, CellGrid.D);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a range of tiles, splitting it in half until a single tile is left.
+     */
+    @SuppressWarnings("serial")
+    private class Tiles extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        Tiles(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                generateTile(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tiles(from, middle), new Tiles(middle, to));
+            }
+        }
+    }
+}